@@ -0,0 +1,22 @@
+package edu.berkeley.eecs.cs164.pa1.bench;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Counts the characters matched by a benchmark so JMH reports a chars/s rate next to
+ * ops/s; ns/char is its reciprocal times 10^9.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class CharCounter {
+    public long chars;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        chars = 0;
+    }
+}
@@ -0,0 +1,57 @@
+package edu.berkeley.eecs.cs164.pa1.bench;
+
+import edu.berkeley.eecs.cs164.pa1.RegexParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Patterns whose epsilon closures are large, where the cost of computing closures
+ * dominates a step: depth levels of nested stars around a single atom, ((a*)*)*, and a
+ * chain of depth optional atoms, a?a?a?aaa. Both are matched against 1,000 characters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClosureBenchmark {
+    private static final int LENGTH = 1000;
+
+    @Param({"NFA", "PIKE_VM"})
+    public Engine engine;
+
+    @Param({"nested-star", "optional-chain"})
+    public String shape;
+
+    @Param({"10", "50"})
+    public int depth;
+
+    private Engine.Matcher matcher;
+    private String text;
+
+    @Setup
+    public void setUp() {
+        String pattern;
+        if (shape.equals("nested-star")) {
+            pattern = Patterns.repeat("(", depth) + "a*" + Patterns.repeat(")*", depth);
+        } else {
+            pattern = Patterns.repeat("a?", depth) + "(a?)*";
+        }
+        matcher = engine.create(RegexParser.parse(pattern));
+        text = Patterns.repeat("a", LENGTH);
+    }
+
+    @Benchmark
+    public boolean matches(CharCounter counter) {
+        counter.chars += text.length();
+        return matcher.matches(text);
+    }
+}
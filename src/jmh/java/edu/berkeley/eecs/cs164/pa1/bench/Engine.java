@@ -0,0 +1,81 @@
+package edu.berkeley.eecs.cs164.pa1.bench;
+
+import edu.berkeley.eecs.cs164.pa1.Automaton;
+import edu.berkeley.eecs.cs164.pa1.BitParallelMatcher;
+import edu.berkeley.eecs.cs164.pa1.CompiledNfa;
+import edu.berkeley.eecs.cs164.pa1.DfaMatcher;
+import edu.berkeley.eecs.cs164.pa1.NFASimulator;
+
+/**
+ * The matching engines a benchmark can be run against. NFA is the original simulator
+ * every other engine should be compared with.
+ */
+public enum Engine {
+    NFA {
+        @Override
+        public Matcher create(Automaton nfa) {
+            final NFASimulator simulator = new NFASimulator(nfa);
+            return new Matcher() {
+                public boolean matches(String text) {
+                    return simulator.matches(text);
+                }
+            };
+        }
+    },
+    LAZY_DFA {
+        @Override
+        public Matcher create(Automaton nfa) {
+            final NFASimulator simulator = new NFASimulator(nfa, NFASimulator.Mode.LAZY_DFA);
+            return new Matcher() {
+                public boolean matches(String text) {
+                    return simulator.matches(text);
+                }
+            };
+        }
+    },
+    DFA {
+        @Override
+        public Matcher create(Automaton nfa) {
+            final DfaMatcher matcher = new DfaMatcher(nfa);
+            return new Matcher() {
+                public boolean matches(String text) {
+                    return matcher.matches(text);
+                }
+            };
+        }
+    },
+    PIKE_VM {
+        @Override
+        public Matcher create(Automaton nfa) {
+            final CompiledNfa compiled = CompiledNfa.compile(nfa);
+            return new Matcher() {
+                public boolean matches(String text) {
+                    return compiled.matches(text);
+                }
+            };
+        }
+    },
+    BIT_PARALLEL {
+        @Override
+        public Matcher create(Automaton nfa) {
+            final BitParallelMatcher matcher = new BitParallelMatcher(nfa);
+            return new Matcher() {
+                public boolean matches(String text) {
+                    return matcher.matches(text);
+                }
+            };
+        }
+    };
+
+    /**
+     * Builds whatever the engine needs to match against the given NFA
+     *
+     * @param nfa the nfa to match against
+     * @return a matcher for the nfa
+     */
+    public abstract Matcher create(Automaton nfa);
+
+    public interface Matcher {
+        boolean matches(String text);
+    }
+}
@@ -0,0 +1,81 @@
+package edu.berkeley.eecs.cs164.pa1.bench;
+
+import edu.berkeley.eecs.cs164.pa1.AutomatonFormat;
+import edu.berkeley.eecs.cs164.pa1.CompiledNfa;
+import edu.berkeley.eecs.cs164.pa1.RegexParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Getting 1,000 patterns ready to match on startup: either parsing and compiling every
+ * pattern, or loading the compiled automata back from a memory mapped file written by
+ * {@link AutomatonFormat}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoadBenchmark {
+    private static final int PATTERNS = 1000;
+
+    @Param({"parse", "load"})
+    public String source;
+
+    private String[] patterns;
+    private File file;
+    private ByteBuffer mapped;
+
+    @Setup
+    public void setUp() throws IOException {
+        patterns = new String[PATTERNS];
+        for (int i = 0; i < PATTERNS; i++) {
+            patterns[i] = "(user|id)" + i + "=([a-z0-9]+)(,\\d{1,4})*|key" + i + "[^;]*;";
+        }
+        file = File.createTempFile("patterns", ".bin");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            for (String pattern : patterns) {
+                out.write(AutomatonFormat.toBytes(CompiledNfa.compile(RegexParser.parse(pattern))));
+            }
+        } finally {
+            out.close();
+        }
+        mapped = AutomatonFormat.map(file.toPath());
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public CompiledNfa[] load() {
+        CompiledNfa[] nfas = new CompiledNfa[PATTERNS];
+        if (source.equals("parse")) {
+            for (int i = 0; i < PATTERNS; i++) {
+                nfas[i] = CompiledNfa.compile(RegexParser.parse(patterns[i]));
+            }
+        } else {
+            ByteBuffer buffer = mapped.duplicate();
+            for (int i = 0; i < PATTERNS; i++) {
+                nfas[i] = AutomatonFormat.readNfa(buffer);
+            }
+        }
+        return nfas;
+    }
+}
@@ -0,0 +1,55 @@
+package edu.berkeley.eecs.cs164.pa1.bench;
+
+import edu.berkeley.eecs.cs164.pa1.RegexParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Whole-string matching of accepting and rejecting inputs from 10 B to 10 MB. The
+ * rejecting input differs from the accepting one only in its last character, so both
+ * have to be scanned completely.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatchBenchmark {
+    private static final String PATTERN = "(ab|cd)*(e|f)+g?";
+
+    @Param({"NFA", "LAZY_DFA", "DFA", "PIKE_VM", "BIT_PARALLEL"})
+    public Engine engine;
+
+    @Param({"10", "1000", "100000", "10000000"})
+    public int length;
+
+    @Param({"true", "false"})
+    public boolean accepting;
+
+    private Engine.Matcher matcher;
+    private String text;
+
+    @Setup
+    public void setUp() {
+        matcher = engine.create(RegexParser.parse(PATTERN));
+        String body = Patterns.fill("abcdab", length - 2) + "ef";
+        text = accepting ? body : body.substring(0, length - 1) + "x";
+        if (matcher.matches(text) != accepting) {
+            throw new IllegalStateException(engine + " gave the wrong answer");
+        }
+    }
+
+    @Benchmark
+    public boolean matches(CharCounter counter) {
+        counter.chars += text.length();
+        return matcher.matches(text);
+    }
+}
@@ -0,0 +1,53 @@
+package edu.berkeley.eecs.cs164.pa1.bench;
+
+import edu.berkeley.eecs.cs164.pa1.MatchMetrics;
+import edu.berkeley.eecs.cs164.pa1.NFASimulator;
+import edu.berkeley.eecs.cs164.pa1.RegexParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The cost of recording {@link MatchMetrics}: the same short texts matched with and
+ * without metrics, by four threads sharing one metrics instance.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class MetricsBenchmark {
+    private static final MatchMetrics SHARED = new MatchMetrics();
+
+    @Param({"NFA", "LAZY_DFA"})
+    public NFASimulator.Mode mode;
+
+    @Param({"false", "true"})
+    public boolean metrics;
+
+    private NFASimulator simulator;
+    private String text;
+
+    @Setup
+    public void setUp() {
+        simulator = new NFASimulator(RegexParser.parse("(ab|cd)*(e|f)+g?"), mode);
+        if (metrics) {
+            simulator.setMetrics(SHARED);
+        }
+        text = Patterns.fill("abcdab", 98) + "ef";
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return simulator.matches(text);
+    }
+}
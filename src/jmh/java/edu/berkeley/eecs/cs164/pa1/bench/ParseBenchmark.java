@@ -0,0 +1,53 @@
+package edu.berkeley.eecs.cs164.pa1.bench;
+
+import edu.berkeley.eecs.cs164.pa1.Automaton;
+import edu.berkeley.eecs.cs164.pa1.RegexParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of {@link RegexParser#parse(String)} on short and deeply nested patterns.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+
+    @Param({"short", "nested", "alternation", "long"})
+    public String shape;
+
+    private String pattern;
+
+    @Setup
+    public void setUp() {
+        if (shape.equals("short")) {
+            pattern = "a(bc)*d|e+";
+        } else if (shape.equals("nested")) {
+            // 200 levels of parentheses around a starred atom
+            pattern = Patterns.repeat("(", 200) + "a*" + Patterns.repeat(")*", 200);
+        } else if (shape.equals("alternation")) {
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < 200; i++) {
+                builder.append(i == 0 ? "" : "|").append("word").append(i);
+            }
+            pattern = builder.toString();
+        } else {
+            pattern = Patterns.repeat("a?", 500) + Patterns.repeat("a", 500);
+        }
+    }
+
+    @Benchmark
+    public Automaton parse() {
+        return RegexParser.parse(pattern);
+    }
+}
@@ -0,0 +1,59 @@
+package edu.berkeley.eecs.cs164.pa1.bench;
+
+import edu.berkeley.eecs.cs164.pa1.RegexParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Patterns that blow up backtracking engines or produce large state sets, matched
+ * against 10,000 characters of input.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathologicalBenchmark {
+    private static final int LENGTH = 10000;
+
+    @Param({"NFA", "LAZY_DFA", "DFA", "PIKE_VM"})
+    public Engine engine;
+
+    // (a|a)* and (a*)*b only become interesting on input that ends in a mismatch;
+    // optional-prefix is a?^50 a^50, the worst case from NFASimulatorTest
+    @Param({"alternation-star", "nested-star", "optional-prefix"})
+    public String shape;
+
+    private Engine.Matcher matcher;
+    private String text;
+
+    @Setup
+    public void setUp() {
+        String pattern;
+        if (shape.equals("alternation-star")) {
+            pattern = "(a|a)*";
+            text = Patterns.repeat("a", LENGTH - 1) + "b";
+        } else if (shape.equals("nested-star")) {
+            pattern = "(a*)*b";
+            text = Patterns.repeat("a", LENGTH);
+        } else {
+            pattern = Patterns.repeat("a?", 50) + Patterns.repeat("a", 50);
+            text = Patterns.repeat("a", 100);
+        }
+        matcher = engine.create(RegexParser.parse(pattern));
+    }
+
+    @Benchmark
+    public boolean matches(CharCounter counter) {
+        counter.chars += text.length();
+        return matcher.matches(text);
+    }
+}
@@ -0,0 +1,29 @@
+package edu.berkeley.eecs.cs164.pa1.bench;
+
+/**
+ * String helpers shared by the benchmarks.
+ */
+final class Patterns {
+
+    private Patterns() {
+    }
+
+    static String repeat(String s, int times) {
+        StringBuilder builder = new StringBuilder(s.length() * times);
+        for (int i = 0; i < times; i++) {
+            builder.append(s);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Repeats the unit until the result is exactly length characters long
+     */
+    static String fill(String unit, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        while (builder.length() < length) {
+            builder.append(unit.charAt(builder.length() % unit.length()));
+        }
+        return builder.toString();
+    }
+}
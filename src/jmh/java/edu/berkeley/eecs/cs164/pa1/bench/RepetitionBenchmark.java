@@ -0,0 +1,62 @@
+package edu.berkeley.eecs.cs164.pa1.bench;
+
+import edu.berkeley.eecs.cs164.pa1.Automaton;
+import edu.berkeley.eecs.cs164.pa1.RegexParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Counted repetition a{3,m} against the same language written out by hand as
+ * aaa(a?)^(m-3), the only way to say it before the parser understood braces. Both are
+ * matched against m characters, the longest accepted input.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RepetitionBenchmark {
+
+    @Param({"NFA", "LAZY_DFA", "DFA", "PIKE_VM"})
+    public Engine engine;
+
+    @Param({"counted", "expanded"})
+    public String form;
+
+    @Param({"50", "500"})
+    public int max;
+
+    private String pattern;
+    private Engine.Matcher matcher;
+    private String text;
+
+    @Setup
+    public void setUp() {
+        if (form.equals("counted")) {
+            pattern = "a{3," + max + "}";
+        } else {
+            pattern = "aaa" + Patterns.repeat("a?", max - 3);
+        }
+        matcher = engine.create(RegexParser.parse(pattern));
+        text = Patterns.repeat("a", max);
+    }
+
+    @Benchmark
+    public boolean matches(CharCounter counter) {
+        counter.chars += text.length();
+        return matcher.matches(text);
+    }
+
+    @Benchmark
+    public Automaton parse() {
+        return RegexParser.parse(pattern);
+    }
+}
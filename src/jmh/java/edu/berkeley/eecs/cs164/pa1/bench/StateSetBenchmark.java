@@ -0,0 +1,110 @@
+package edu.berkeley.eecs.cs164.pa1.bench;
+
+import edu.berkeley.eecs.cs164.pa1.Automaton;
+import edu.berkeley.eecs.cs164.pa1.AutomatonState;
+import edu.berkeley.eecs.cs164.pa1.NFASimulator;
+import edu.berkeley.eecs.cs164.pa1.RegexParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hashing and comparing {@link AutomatonState}s on an NFA of about 10,000 states, the
+ * Kleene star of 830 five letter words. {@code insert} fills a HashSet with every
+ * state and looks each one up again; {@code simulate} runs the NFA simulator over 200
+ * characters, going through the start closure of several thousand states after every
+ * word.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StateSetBenchmark {
+    private static final int WORDS = 830;
+
+    private List<AutomatonState> states;
+    private NFASimulator simulator;
+    private String text;
+
+    @Setup
+    public void setUp() {
+        StringBuilder pattern = new StringBuilder("(");
+        for (int i = 0; i < WORDS; i++) {
+            pattern.append(i == 0 ? "" : "|").append(word(i));
+        }
+        pattern.append(")*");
+        Automaton nfa = RegexParser.parse(pattern.toString());
+        states = reachable(nfa.getStart());
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; builder.length() < 200; i += 37) {
+            builder.append(word(i % WORDS));
+        }
+        text = builder.toString();
+        simulator = new NFASimulator(nfa);
+        if (!simulator.matches(text)) {
+            throw new IllegalStateException("text should match");
+        }
+    }
+
+    // five letters spelling out i in base 26
+    private static String word(int i) {
+        char[] letters = new char[5];
+        for (int k = 0; k < letters.length; k++) {
+            letters[k] = (char) ('a' + i % 26);
+            i /= 26;
+        }
+        return new String(letters);
+    }
+
+    private static List<AutomatonState> reachable(AutomatonState start) {
+        List<AutomatonState> result = new ArrayList<AutomatonState>();
+        Set<AutomatonState> visited = new HashSet<AutomatonState>();
+        result.add(start);
+        visited.add(start);
+        for (int i = 0; i < result.size(); i++) {
+            for (Map.Entry<Character, Set<AutomatonState>> entry : result.get(i).getAllTransitions()) {
+                for (AutomatonState target : entry.getValue()) {
+                    if (visited.add(target)) {
+                        result.add(target);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public int insert() {
+        Set<AutomatonState> set = new HashSet<AutomatonState>();
+        for (AutomatonState state : states) {
+            set.add(state);
+        }
+        int found = 0;
+        for (AutomatonState state : states) {
+            if (set.contains(state)) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public boolean simulate(CharCounter counter) {
+        counter.chars += text.length();
+        return simulator.matches(text);
+    }
+}
@@ -0,0 +1,273 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Splits the whole char space into equivalence classes of characters that no
+ * transition of an automaton tells apart: two characters share a class exactly when
+ * every single character and {@link CharClass} label either holds both or neither.
+ * Table driven matchers index their tables by class instead of by character, so a
+ * pattern like [a-z]+@[a-z]+ needs 3 columns rather than one per character.
+ * <p>
+ * The class of a character is found in a two level map: the high byte picks a page of
+ * 256 entries and the low byte the entry. Pages that map every character to the same
+ * class are shared, so most patterns only pay for the pages their labels fall in.
+ * Class 0 always holds character 0. Instances are immutable.
+ */
+public class AlphabetPartition {
+    private static final int PAGE_SIZE = 256;
+
+    private final char[][] pages;
+    private final char[] representatives;
+    private final long memoryBytes;
+
+    private AlphabetPartition(char[][] pages, char[] representatives) {
+        this.pages = pages;
+        this.representatives = representatives;
+        long bytes = 8L * PAGE_SIZE + 2L * representatives.length;
+        Set<char[]> distinct = Collections.newSetFromMap(new IdentityHashMap<char[], Boolean>());
+        Collections.addAll(distinct, pages);
+        memoryBytes = bytes + 2L * PAGE_SIZE * distinct.size();
+    }
+
+    /**
+     * Computes the classes of characters the given NFA cannot tell apart
+     *
+     * @param nfa the nfa whose transitions define the partition
+     * @return the partition
+     */
+    public static AlphabetPartition of(Automaton nfa) {
+        return of(nfa.getStart());
+    }
+
+    /**
+     * Computes the partition for every state reachable from the given one. The work
+     * follows the number of distinct label boundaries rather than the size of the char
+     * space: only the pages some boundary falls inside are filled in one by one.
+     *
+     * @param start the state to search from
+     * @return the partition
+     */
+    static AlphabetPartition of(AutomatonState start) {
+        Set<Character> literals = new HashSet<Character>();
+        Set<CharClass> classes = new HashSet<CharClass>();
+        for (AutomatonState state : Automaton.reachableFrom(start)) {
+            for (Map.Entry<Character, Set<AutomatonState>> entry : state.getAllTransitions()) {
+                if (entry.getKey() != null) {
+                    literals.add(entry.getKey());
+                }
+            }
+            for (Map.Entry<CharClass, Set<AutomatonState>> entry : state.getClassTransitions()) {
+                classes.add(entry.getKey());
+            }
+        }
+
+        // every label boundary starts a new interval; characters inside an interval are
+        // never told apart. Interval i runs from bounds[i] up to bounds[i + 1] - 1.
+        int[] bounds = new int[1 + 2 * literals.size() + countRangeEnds(classes)];
+        int count = 0;
+        bounds[count++] = 0;
+        for (char ch : literals) {
+            bounds[count++] = ch;
+            bounds[count++] = ch + 1;
+        }
+        for (CharClass cls : classes) {
+            char[] ranges = cls.getRanges();
+            for (int r = 0; r < ranges.length; r += 2) {
+                bounds[count++] = ranges[r];
+                bounds[count++] = ranges[r + 1] + 1;
+            }
+        }
+        Arrays.sort(bounds);
+        int intervals = 0;
+        for (int b : bounds) {
+            if (b <= Character.MAX_VALUE && (intervals == 0 || b != bounds[intervals - 1])) {
+                bounds[intervals++] = b;
+            }
+        }
+        bounds = Arrays.copyOf(bounds, intervals);
+
+        // refine the intervals label by label: the intervals a label covers move to a new
+        // class, one per class they came from
+        int[] classOfInterval = new int[intervals];
+        int classCount = 1;
+        for (char ch : literals) {
+            classCount = split(classOfInterval, new int[]{intervalOf(bounds, ch)}, classCount);
+        }
+        for (CharClass cls : classes) {
+            List<Integer> covered = new ArrayList<Integer>();
+            char[] ranges = cls.getRanges();
+            for (int r = 0; r < ranges.length; r += 2) {
+                for (int i = intervalOf(bounds, ranges[r]); i <= intervalOf(bounds, ranges[r + 1]); i++) {
+                    covered.add(i);
+                }
+            }
+            int[] coveredIntervals = new int[covered.size()];
+            for (int i = 0; i < coveredIntervals.length; i++) {
+                coveredIntervals[i] = covered.get(i);
+            }
+            classCount = split(classOfInterval, coveredIntervals, classCount);
+        }
+
+        // renumber in order of first character so class 0 holds character 0
+        int[] renumber = new int[classCount];
+        Arrays.fill(renumber, -1);
+        char[] representatives = new char[classCount];
+        int next = 0;
+        for (int i = 0; i < intervals; i++) {
+            int cls = classOfInterval[i];
+            if (renumber[cls] < 0) {
+                representatives[next] = (char) bounds[i];
+                renumber[cls] = next++;
+            }
+            classOfInterval[i] = renumber[cls];
+        }
+
+        // a page inside a single interval is shared by its class; the others are filled
+        // interval by interval
+        char[][] pages = new char[PAGE_SIZE][];
+        Map<Integer, char[]> uniformPages = new HashMap<Integer, char[]>();
+        int interval = 0;
+        for (int page = 0; page < PAGE_SIZE; page++) {
+            int from = page * PAGE_SIZE;
+            int to = from + PAGE_SIZE - 1;
+            while (interval + 1 < intervals && bounds[interval + 1] <= from) {
+                interval++;
+            }
+            if (intervalEnd(bounds, interval) >= to) {
+                pages[page] = uniformPage(uniformPages, classOfInterval[interval]);
+                continue;
+            }
+            char[] entries = new char[PAGE_SIZE];
+            for (int i = interval, ch = from; ch <= to; i++) {
+                int last = Math.min(intervalEnd(bounds, i), to);
+                Arrays.fill(entries, ch - from, last - from + 1, (char) classOfInterval[i]);
+                ch = last + 1;
+            }
+            pages[page] = entries;
+        }
+        return new AlphabetPartition(pages, Arrays.copyOf(representatives, next));
+    }
+
+    /**
+     * Rebuilds a partition from the class of every character, as read back by
+     * {@link AutomatonFormat}
+     *
+     * @param classOf    the class of each of the 65536 characters
+     * @param classCount number of classes
+     * @return the partition
+     * @throws IllegalArgumentException if the classes are not numbered like {@link #of(Automaton)} numbers them
+     */
+    static AlphabetPartition fromClassMap(char[] classOf, int classCount) {
+        if (classOf.length != Character.MAX_VALUE + 1 || classCount <= 0 || classOf[0] != 0) {
+            throw new IllegalArgumentException("Invalid class map");
+        }
+        for (char cls : classOf) {
+            if (cls >= classCount) {
+                throw new IllegalArgumentException("Class out of range: " + (int) cls);
+            }
+        }
+        char[] representatives = new char[classCount];
+        Arrays.fill(representatives, Character.MAX_VALUE);
+        for (int ch = classOf.length - 1; ch >= 0; ch--) {
+            representatives[classOf[ch]] = (char) ch;
+        }
+
+        char[][] pages = new char[PAGE_SIZE][];
+        Map<Integer, char[]> uniformPages = new HashMap<Integer, char[]>();
+        for (int page = 0; page < PAGE_SIZE; page++) {
+            int from = page * PAGE_SIZE;
+            boolean uniform = true;
+            for (int i = 1; i < PAGE_SIZE && uniform; i++) {
+                uniform = classOf[from + i] == classOf[from];
+            }
+            pages[page] = uniform ? uniformPage(uniformPages, classOf[from])
+                    : Arrays.copyOfRange(classOf, from, from + PAGE_SIZE);
+        }
+        return new AlphabetPartition(pages, representatives);
+    }
+
+    private static int countRangeEnds(Set<CharClass> classes) {
+        int ends = 0;
+        for (CharClass cls : classes) {
+            ends += cls.getRanges().length;
+        }
+        return ends;
+    }
+
+    // Finds the interval holding a character
+    private static int intervalOf(int[] bounds, char ch) {
+        int index = Arrays.binarySearch(bounds, ch);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    // Last character of an interval
+    private static int intervalEnd(int[] bounds, int interval) {
+        return interval + 1 < bounds.length ? bounds[interval + 1] - 1 : Character.MAX_VALUE;
+    }
+
+    // The page mapping every character to cls, shared by all pages that do
+    private static char[] uniformPage(Map<Integer, char[]> uniformPages, int cls) {
+        char[] shared = uniformPages.get(cls);
+        if (shared == null) {
+            shared = new char[PAGE_SIZE];
+            Arrays.fill(shared, (char) cls);
+            uniformPages.put(cls, shared);
+        }
+        return shared;
+    }
+
+    // Moves the given intervals out of their current classes, returning the new count
+    private static int split(int[] classOfInterval, int[] covered, int classCount) {
+        Map<Integer, Integer> moved = new HashMap<Integer, Integer>();
+        for (int interval : covered) {
+            Integer target = moved.get(classOfInterval[interval]);
+            if (target == null) {
+                target = classCount++;
+                moved.put(classOfInterval[interval], target);
+            }
+            classOfInterval[interval] = target;
+        }
+        return classCount;
+    }
+
+    public int getClassCount() {
+        return representatives.length;
+    }
+
+    /**
+     * @param ch the character to look up
+     * @return the class holding the character, between 0 and {@link #getClassCount()} - 1
+     */
+    public int classOf(char ch) {
+        return pages[ch >>> 8][ch & 0xff];
+    }
+
+    /**
+     * @param cls a class number
+     * @return the smallest character in the class
+     */
+    public char getRepresentative(int cls) {
+        return representatives[cls];
+    }
+
+    /**
+     * @return approximate number of bytes used by the class map
+     */
+    public long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "AlphabetPartition[classes=" + getClassCount() + "]";
+    }
+}
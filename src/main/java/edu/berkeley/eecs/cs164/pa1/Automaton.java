@@ -1,6 +1,9 @@
 package edu.berkeley.eecs.cs164.pa1;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -12,6 +15,7 @@ import java.util.Set;
 public class Automaton {
     private final AutomatonState start;
     private final AutomatonState out;
+    private final int groupCount;
 
     /**
      * Create a new Automaton from a given start and output state
@@ -20,8 +24,20 @@ public class Automaton {
      * @param out   Output / final state for the automaton
      */
     public Automaton(AutomatonState start, AutomatonState out) {
+        this(start, out, 0);
+    }
+
+    /**
+     * Create a new Automaton whose states record capture groups 1 to groupCount
+     *
+     * @param start      Start state for the automaton
+     * @param out        Output / final state for the automaton
+     * @param groupCount number of capture groups, see {@link AutomatonState#setCaptureSlot(int)}
+     */
+    public Automaton(AutomatonState start, AutomatonState out, int groupCount) {
         this.start = start;
         this.out = out;
+        this.groupCount = groupCount;
     }
 
     public AutomatonState getOut() {
@@ -32,6 +48,115 @@ public class Automaton {
         return start;
     }
 
+    /**
+     * @return number of capture groups, not counting the whole match
+     */
+    public int getGroupCount() {
+        return groupCount;
+    }
+
+    /**
+     * Counts the states reachable from the start state
+     *
+     * @return the number of states
+     */
+    public int getStateCount() {
+        return getReachableStates().size();
+    }
+
+    /**
+     * Counts the transitions, epsilon ones included, leaving states reachable from the start state
+     *
+     * @return the number of transitions
+     */
+    public int getEdgeCount() {
+        int edges = 0;
+        for (AutomatonState state : getReachableStates()) {
+            for (Map.Entry<Character, Set<AutomatonState>> entry : state.getAllTransitions()) {
+                edges += entry.getValue().size();
+            }
+            for (Map.Entry<CharClass, Set<AutomatonState>> entry : state.getClassTransitions()) {
+                edges += entry.getValue().size();
+            }
+        }
+        return edges;
+    }
+
+    /**
+     * Creates a copy of this automaton with fresh states and the same transitions and
+     * capture slots. Only states reachable from the start state are copied; an
+     * unreachable out state is replaced by a fresh state without transitions.
+     *
+     * @return the copy
+     */
+    public Automaton copy() {
+        List<AutomatonState> states = getReachableStates();
+        Map<AutomatonState, AutomatonState> copies = new HashMap<AutomatonState, AutomatonState>();
+        for (AutomatonState state : states) {
+            AutomatonState copy = new AutomatonState();
+            copy.setCaptureSlot(state.getCaptureSlot());
+            copies.put(state, copy);
+        }
+        for (AutomatonState state : states) {
+            AutomatonState copy = copies.get(state);
+            for (Map.Entry<Character, Set<AutomatonState>> entry : state.getAllTransitions()) {
+                for (AutomatonState target : entry.getValue()) {
+                    if (entry.getKey() == null) {
+                        copy.addEpsilonTransition(copies.get(target));
+                    } else {
+                        copy.addTransition(entry.getKey(), copies.get(target));
+                    }
+                }
+            }
+            for (Map.Entry<CharClass, Set<AutomatonState>> entry : state.getClassTransitions()) {
+                for (AutomatonState target : entry.getValue()) {
+                    copy.addTransition(entry.getKey(), copies.get(target));
+                }
+            }
+        }
+        AutomatonState out = copies.get(this.out);
+        return new Automaton(copies.get(start), out == null ? new AutomatonState() : out, groupCount);
+    }
+
+    /**
+     * Lists the states reachable from the start state in breadth first order
+     *
+     * @return the states, starting with the start state
+     */
+    List<AutomatonState> getReachableStates() {
+        return reachableFrom(start);
+    }
+
+    /**
+     * Lists the states reachable from the given state in breadth first order
+     *
+     * @param start the state to search from
+     * @return the states, starting with the given one
+     */
+    static List<AutomatonState> reachableFrom(AutomatonState start) {
+        List<AutomatonState> states = new ArrayList<AutomatonState>();
+        Set<AutomatonState> visited = new HashSet<AutomatonState>();
+        states.add(start);
+        visited.add(start);
+        for (int i = 0; i < states.size(); i++) {
+            for (Map.Entry<Character, Set<AutomatonState>> entry : states.get(i).getAllTransitions()) {
+                for (AutomatonState target : entry.getValue()) {
+                    if (visited.add(target)) {
+                        states.add(target);
+                    }
+                }
+            }
+            for (Map.Entry<CharClass, Set<AutomatonState>> entry : states.get(i).getClassTransitions()) {
+                for (AutomatonState target : entry.getValue()) {
+                    if (visited.add(target)) {
+                        states.add(target);
+                    }
+                }
+            }
+        }
+        return states;
+    }
+
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder();
@@ -56,6 +181,13 @@ public class Automaton {
                     builder.append(String.format("\t%s -> %s [label=%s];%n", current, target, label));
                 }
             }
+            for (Map.Entry<CharClass, Set<AutomatonState>> entry : current.getClassTransitions()) {
+                for (AutomatonState target : entry.getValue()) {
+                    String label = String.format("\"%s\"", entry.getKey()).replace("\\", "\\\\");
+                    printTraversal(target, visited, builder);
+                    builder.append(String.format("\t%s -> %s [label=%s];%n", current, target, label));
+                }
+            }
         }
     }
 }
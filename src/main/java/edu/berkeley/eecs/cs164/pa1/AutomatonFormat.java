@@ -0,0 +1,400 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A compact binary format for {@link CompiledNfa} and {@link Dfa}, so patterns can be
+ * compiled once, written to a file and loaded on startup without parsing them again or
+ * building a single {@link AutomatonState}. A record is a 16 byte header followed by
+ * the payload:
+ * <pre>
+ *     int   magic     {@link #MAGIC}, "RGFA"
+ *     short version   {@link #VERSION}
+ *     byte  kind      1 for a CompiledNfa, 2 for a Dfa
+ *     byte  reserved  0
+ *     int   length    number of payload bytes
+ *     int   checksum  CRC-32 of the payload
+ * </pre>
+ * The payload holds the automaton's arrays back to back, each preceded by its length,
+ * in big endian order, so loading an automaton is one bulk copy per array. A
+ * {@link CharClass} used by several edges is stored once. A DFA's class map is stored as
+ * runs of characters sharing a class rather than as 65536 entries.
+ * <p>
+ * Records can be concatenated: a read starts at the buffer's position and, if it
+ * succeeds, leaves the position just past the record, so a file of many patterns is
+ * loaded by {@link #map(Path) mapping} it and reading until nothing remains. A record
+ * with a different magic number, version or kind, a wrong checksum or arrays that don't
+ * fit together is rejected with an {@link AutomatonFormatException}, and the position
+ * is left where it was.
+ */
+public final class AutomatonFormat {
+    /** The first four bytes of every record */
+    public static final int MAGIC = 0x52474641;
+
+    /** The version written into every record; other versions are rejected */
+    public static final short VERSION = 1;
+
+    private static final byte KIND_NFA = 1;
+    private static final byte KIND_DFA = 2;
+    private static final int HEADER_BYTES = 16;
+
+    private AutomatonFormat() {
+    }
+
+    /**
+     * Serializes a compiled NFA, closure table excepted, which is rebuilt on loading
+     *
+     * @param nfa the nfa to serialize
+     * @return the record
+     */
+    public static byte[] toBytes(CompiledNfa nfa) {
+        // classes are stored once each and referred to by index
+        List<CharClass> classes = new ArrayList<CharClass>();
+        Map<CharClass, Integer> classIndex = new HashMap<CharClass, Integer>();
+        CharClass[] labels = nfa.getClassLabels();
+        int[] labelIndexes = new int[labels.length];
+        for (int e = 0; e < labels.length; e++) {
+            Integer index = classIndex.get(labels[e]);
+            if (index == null) {
+                index = classes.size();
+                classes.add(labels[e]);
+                classIndex.put(labels[e], index);
+            }
+            labelIndexes[e] = index;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(nfa.getStateCount());
+            out.writeInt(nfa.getAcceptState());
+            out.writeInt(nfa.getGroupCount());
+            writeInts(out, nfa.getCharOffsets());
+            writeChars(out, nfa.getCharLabels());
+            writeInts(out, nfa.getCharTargets());
+            writeInts(out, nfa.getEpsilonOffsets());
+            writeInts(out, nfa.getEpsilonTargets());
+            writeInts(out, nfa.getClassOffsets());
+            writeInts(out, labelIndexes);
+            writeInts(out, nfa.getClassTargets());
+            writeInts(out, nfa.getCaptureSlots());
+            out.writeInt(classes.size());
+            for (CharClass cls : classes) {
+                writeChars(out, cls.getRanges());
+            }
+        } catch (IOException e) {
+            // a ByteArrayOutputStream doesn't throw
+            throw new IllegalStateException(e);
+        }
+        return record(KIND_NFA, bytes.toByteArray());
+    }
+
+    /**
+     * Serializes a DFA
+     *
+     * @param dfa the dfa to serialize
+     * @return the record
+     */
+    public static byte[] toBytes(Dfa dfa) {
+        // the class map as runs of characters sharing a class
+        AlphabetPartition alphabet = dfa.getAlphabet();
+        StringBuilder runStarts = new StringBuilder();
+        StringBuilder runClasses = new StringBuilder();
+        for (int ch = 0; ch <= Character.MAX_VALUE; ch++) {
+            int cls = alphabet.classOf((char) ch);
+            if (ch == 0 || cls != alphabet.classOf((char) (ch - 1))) {
+                runStarts.append((char) ch);
+                runClasses.append((char) cls);
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(alphabet.getClassCount());
+            writeChars(out, runStarts.toString().toCharArray());
+            writeChars(out, runClasses.toString().toCharArray());
+            out.writeInt(dfa.getStartState());
+            out.writeInt(dfa.getUnminimizedStateCount());
+            writeInts(out, dfa.getTable());
+            long[] accepting = dfa.getAccepting();
+            out.writeInt(accepting.length);
+            for (long word : accepting) {
+                out.writeLong(word);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return record(KIND_DFA, bytes.toByteArray());
+    }
+
+    /**
+     * Loads a compiled NFA from the record at the buffer's position
+     *
+     * @param buffer the buffer to read from
+     * @return the nfa
+     * @throws AutomatonFormatException if there is no valid NFA record at the position
+     */
+    public static CompiledNfa readNfa(ByteBuffer buffer) {
+        ByteBuffer in = payload(buffer, KIND_NFA);
+        try {
+            int n = in.getInt();
+            int accept = in.getInt();
+            int groupCount = in.getInt();
+            int[] charOffsets = readInts(in);
+            char[] charLabels = readChars(in);
+            int[] charTargets = readInts(in);
+            int[] epsilonOffsets = readInts(in);
+            int[] epsilonTargets = readInts(in);
+            int[] classOffsets = readInts(in);
+            int[] labelIndexes = readInts(in);
+            int[] classTargets = readInts(in);
+            int[] captureSlots = readInts(in);
+            CharClass[] classes = new CharClass[readLength(in, 4)];
+            for (int i = 0; i < classes.length; i++) {
+                classes[i] = CharClass.of(readChars(in));
+            }
+            checkFullyRead(in);
+
+            if (n <= 0 || accept < 0 || accept > n || groupCount < 0) {
+                throw new AutomatonFormatException("Invalid state count, accept state or group count");
+            }
+            checkEdges(charOffsets, charTargets, n);
+            checkEdges(epsilonOffsets, epsilonTargets, n);
+            checkEdges(classOffsets, classTargets, n);
+            if (charLabels.length != charTargets.length || labelIndexes.length != classTargets.length
+                    || captureSlots.length != n) {
+                throw new AutomatonFormatException("Array lengths don't match");
+            }
+            for (int s = 0; s < n; s++) {
+                // matchers stop scanning a state's labels once they pass the character
+                for (int e = charOffsets[s] + 1; e < charOffsets[s + 1]; e++) {
+                    if (charLabels[e] < charLabels[e - 1]) {
+                        throw new AutomatonFormatException("Character labels are not sorted");
+                    }
+                }
+                if (captureSlots[s] < -1 || captureSlots[s] / 2 > groupCount) {
+                    throw new AutomatonFormatException("Capture slot out of range: " + captureSlots[s]);
+                }
+            }
+            CharClass[] classLabels = new CharClass[labelIndexes.length];
+            for (int e = 0; e < classLabels.length; e++) {
+                if (labelIndexes[e] < 0 || labelIndexes[e] >= classes.length) {
+                    throw new AutomatonFormatException("Class index out of range: " + labelIndexes[e]);
+                }
+                classLabels[e] = classes[labelIndexes[e]];
+            }
+
+            CompiledNfa nfa = new CompiledNfa(accept, charOffsets, charLabels, charTargets,
+                    epsilonOffsets, epsilonTargets, classOffsets, classLabels, classTargets,
+                    captureSlots, groupCount);
+            skipRecord(buffer, in);
+            return nfa;
+        } catch (BufferUnderflowException e) {
+            throw new AutomatonFormatException("Truncated payload", e);
+        } catch (IllegalArgumentException e) {
+            throw new AutomatonFormatException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Loads a DFA from the record at the buffer's position
+     *
+     * @param buffer the buffer to read from
+     * @return the dfa
+     * @throws AutomatonFormatException if there is no valid DFA record at the position
+     */
+    public static Dfa readDfa(ByteBuffer buffer) {
+        ByteBuffer in = payload(buffer, KIND_DFA);
+        try {
+            int classCount = in.getInt();
+            char[] runStarts = readChars(in);
+            char[] runClasses = readChars(in);
+            int start = in.getInt();
+            int unminimized = in.getInt();
+            int[] table = readInts(in);
+            long[] accepting = new long[readLength(in, 8)];
+            in.asLongBuffer().get(accepting);
+            in.position(in.position() + 8 * accepting.length);
+            checkFullyRead(in);
+
+            if (classCount <= 0 || runStarts.length == 0 || runStarts[0] != 0
+                    || runClasses.length != runStarts.length) {
+                throw new AutomatonFormatException("Invalid class map");
+            }
+            char[] classOf = new char[Character.MAX_VALUE + 1];
+            for (int r = 0; r < runStarts.length; r++) {
+                int end = r + 1 < runStarts.length ? runStarts[r + 1] : classOf.length;
+                if (end <= runStarts[r]) {
+                    throw new AutomatonFormatException("Class map runs are not in order");
+                }
+                for (int ch = runStarts[r]; ch < end; ch++) {
+                    classOf[ch] = runClasses[r];
+                }
+            }
+            AlphabetPartition alphabet = AlphabetPartition.fromClassMap(classOf, classCount);
+
+            int stateCount = table.length / classCount;
+            if (stateCount == 0 || table.length % classCount != 0
+                    || accepting.length != (stateCount + 63) / 64 || start < 0 || start >= stateCount) {
+                throw new AutomatonFormatException("Invalid transition table");
+            }
+            for (int target : table) {
+                if (target < 0 || target >= stateCount) {
+                    throw new AutomatonFormatException("Transition out of range: " + target);
+                }
+            }
+
+            Dfa dfa = new Dfa(alphabet, table, accepting, start, unminimized);
+            skipRecord(buffer, in);
+            return dfa;
+        } catch (BufferUnderflowException e) {
+            throw new AutomatonFormatException("Truncated payload", e);
+        } catch (IllegalArgumentException e) {
+            throw new AutomatonFormatException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Maps a file of records into memory, read only. Pages are read in as records are
+     * loaded, and the mapping stays valid after this returns.
+     *
+     * @param file the file to map
+     * @return a buffer positioned at the start of the file
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public static MappedByteBuffer map(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static byte[] record(byte kind, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        record.putInt(MAGIC);
+        record.putShort(VERSION);
+        record.put(kind);
+        record.put((byte) 0);
+        record.putInt(payload.length);
+        record.putInt((int) crc.getValue());
+        record.put(payload);
+        return record.array();
+    }
+
+    // Checks the header of the record at the buffer's position and returns a view of its
+    // payload, without moving the buffer
+    private static ByteBuffer payload(ByteBuffer buffer, byte kind) {
+        ByteBuffer in = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        if (in.remaining() < HEADER_BYTES) {
+            throw new AutomatonFormatException("Truncated header");
+        }
+        if (in.getInt() != MAGIC) {
+            throw new AutomatonFormatException("Not a serialized automaton");
+        }
+        short version = in.getShort();
+        if (version != VERSION) {
+            throw new AutomatonFormatException("Unsupported version: " + version);
+        }
+        byte recordKind = in.get();
+        if (recordKind != kind) {
+            throw new AutomatonFormatException("Expected record kind " + kind + " but found " + recordKind);
+        }
+        in.get();
+        int length = in.getInt();
+        int checksum = in.getInt();
+        if (length < 0 || length > in.remaining()) {
+            throw new AutomatonFormatException("Truncated payload");
+        }
+
+        ByteBuffer payload = in.slice().order(ByteOrder.BIG_ENDIAN);
+        payload.limit(length);
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            throw new AutomatonFormatException("Checksum mismatch");
+        }
+        return payload;
+    }
+
+    private static void skipRecord(ByteBuffer buffer, ByteBuffer payload) {
+        buffer.position(buffer.position() + HEADER_BYTES + payload.limit());
+    }
+
+    private static void checkFullyRead(ByteBuffer payload) {
+        if (payload.hasRemaining()) {
+            throw new AutomatonFormatException(payload.remaining() + " unexpected bytes after payload");
+        }
+    }
+
+    // offsets must slice targets into n ordered runs, and targets must all be states
+    private static void checkEdges(int[] offsets, int[] targets, int n) {
+        if (offsets.length != n + 1 || offsets[0] != 0 || offsets[n] != targets.length) {
+            throw new AutomatonFormatException("Invalid edge offsets");
+        }
+        for (int s = 0; s < n; s++) {
+            if (offsets[s + 1] < offsets[s]) {
+                throw new AutomatonFormatException("Invalid edge offsets");
+            }
+        }
+        for (int target : targets) {
+            if (target < 0 || target >= n) {
+                throw new AutomatonFormatException("Edge target out of range: " + target);
+            }
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static void writeChars(DataOutputStream out, char[] values) throws IOException {
+        out.writeInt(values.length);
+        for (char value : values) {
+            out.writeChar(value);
+        }
+    }
+
+    private static int readLength(ByteBuffer in, int width) {
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining() / width) {
+            throw new AutomatonFormatException("Truncated payload");
+        }
+        return length;
+    }
+
+    private static int[] readInts(ByteBuffer in) {
+        int[] values = new int[readLength(in, 4)];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + 4 * values.length);
+        return values;
+    }
+
+    private static char[] readChars(ByteBuffer in) {
+        char[] values = new char[readLength(in, 2)];
+        in.asCharBuffer().get(values);
+        in.position(in.position() + 2 * values.length);
+        return values;
+    }
+}
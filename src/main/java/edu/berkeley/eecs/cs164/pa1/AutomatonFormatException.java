@@ -0,0 +1,14 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+/**
+ * Thrown when bytes handed to {@link AutomatonFormat} are not a valid serialized automaton
+ */
+public class AutomatonFormatException extends RuntimeException {
+    public AutomatonFormatException(String message) {
+        super(message);
+    }
+
+    public AutomatonFormatException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,298 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Shrinks the automata built by {@link RegexParser}. The Thompson construction wraps
+ * every term, factor and alternation in extra states joined by epsilon transitions;
+ * this pass builds an equivalent automaton without them:
+ * <ol>
+ * <li>epsilon transitions are eliminated, keeping only the start state and the states
+ * entered by a character transition;</li>
+ * <li>states that are unreachable, or from which the out state cannot be reached, are
+ * dropped;</li>
+ * <li>states with the same future (same acceptance and same transitions into
+ * equivalent states) are merged.</li>
+ * </ol>
+ * Transitions on a {@link CharClass} are carried over as they are; two states only
+ * merge if they use the same classes. The result has a fresh out state without outgoing transitions; accepting states
+ * reach it through a single epsilon transition each. Comparing
+ * {@link Automaton#getStateCount()} and {@link Automaton#getEdgeCount()} before and
+ * after shows how much was saved.
+ * <p>
+ * Only the language survives: capture groups live on the epsilon paths that are
+ * eliminated, and the order of alternatives is lost when states merge, so the result
+ * never has any groups. Match groups against the automaton as parsed.
+ */
+public class AutomatonOptimizer {
+
+    // Labels from here on stand for a CharClass rather than a single character
+    private static final int CLASS_LABEL_BASE = Character.MAX_VALUE + 1;
+
+    private AutomatonOptimizer() {
+    }
+
+    /**
+     * Builds a smaller automaton accepting the same language. The input is left untouched.
+     * Capture groups are dropped: the result's {@link Automaton#getGroupCount()} is 0.
+     *
+     * @param nfa the automaton to optimize
+     * @return the optimized automaton
+     */
+    public static Automaton optimize(Automaton nfa) {
+        List<AutomatonState> states = nfa.getReachableStates();
+        Map<AutomatonState, Integer> index = new HashMap<AutomatonState, Integer>();
+        for (int i = 0; i < states.size(); i++) {
+            index.put(states.get(i), i);
+        }
+
+        // Kept states: the start state and every target of a character transition
+        int[] keptId = new int[states.size()];
+        Arrays.fill(keptId, -1);
+        List<Integer> kept = new ArrayList<Integer>();
+        keptId[0] = 0;
+        kept.add(0);
+        for (AutomatonState state : states) {
+            for (Map.Entry<Character, Set<AutomatonState>> entry : state.getAllTransitions()) {
+                if (entry.getKey() == null) {
+                    continue;
+                }
+                for (AutomatonState target : entry.getValue()) {
+                    keep(index.get(target), keptId, kept);
+                }
+            }
+            for (Map.Entry<CharClass, Set<AutomatonState>> entry : state.getClassTransitions()) {
+                for (AutomatonState target : entry.getValue()) {
+                    keep(index.get(target), keptId, kept);
+                }
+            }
+        }
+
+        // classes are labelled past the last character, in order of first use
+        List<CharClass> charClasses = new ArrayList<CharClass>();
+        Map<CharClass, Integer> classLabels = new HashMap<CharClass, Integer>();
+
+        // 1. epsilon elimination: a kept state takes over the character transitions of
+        // everything in its epsilon closure, and accepts if the closure holds the out state
+        int n = kept.size();
+        boolean[] accepting = new boolean[n];
+        List<Set<Long>> edges = new ArrayList<Set<Long>>();
+        for (int q = 0; q < n; q++) {
+            Set<Long> out = new HashSet<Long>();
+            for (AutomatonState member : closure(states.get(kept.get(q)))) {
+                if (member == nfa.getOut()) {
+                    accepting[q] = true;
+                }
+                for (Map.Entry<Character, Set<AutomatonState>> entry : member.getAllTransitions()) {
+                    if (entry.getKey() == null) {
+                        continue;
+                    }
+                    for (AutomatonState target : entry.getValue()) {
+                        out.add(edge(entry.getKey(), keptId[index.get(target)]));
+                    }
+                }
+                for (Map.Entry<CharClass, Set<AutomatonState>> entry : member.getClassTransitions()) {
+                    Integer label = classLabels.get(entry.getKey());
+                    if (label == null) {
+                        label = CLASS_LABEL_BASE + charClasses.size();
+                        charClasses.add(entry.getKey());
+                        classLabels.put(entry.getKey(), label);
+                    }
+                    for (AutomatonState target : entry.getValue()) {
+                        out.add(edge(label, keptId[index.get(target)]));
+                    }
+                }
+            }
+            edges.add(out);
+        }
+
+        // 2. drop states that can't reach an accepting state; everything left is reachable
+        // from the start because only character targets were kept
+        boolean[] live = liveStates(edges, accepting);
+
+        // 3. merge states with equal futures
+        int[] classes = mergeEquivalent(edges, accepting, live);
+
+        int classCount = 0;
+        for (int q = 0; q < n; q++) {
+            classCount = Math.max(classCount, classes[q] + 1);
+        }
+        AutomatonState[] result = new AutomatonState[classCount];
+        boolean[] built = new boolean[classCount];
+        for (int c = 0; c < classCount; c++) {
+            result[c] = new AutomatonState();
+        }
+        AutomatonState out = new AutomatonState();
+        for (int q = 0; q < n; q++) {
+            int c = classes[q];
+            if (c < 0 || built[c]) {
+                continue;
+            }
+            built[c] = true;
+            // several targets may have been merged into one class, so dedupe on our side
+            // rather than relying on the state's own sets
+            for (long e : new Signature(c, edges.get(q), classes).transitions) {
+                int label = edgeLabel(e);
+                if (label < CLASS_LABEL_BASE) {
+                    result[c].addTransition((char) label, result[edgeTarget(e)]);
+                } else {
+                    result[c].addTransition(charClasses.get(label - CLASS_LABEL_BASE), result[edgeTarget(e)]);
+                }
+            }
+            if (accepting[q]) {
+                result[c].addEpsilonTransition(out);
+            }
+        }
+
+        // the start state survives even if nothing is accepted from it
+        AutomatonState start = classes[0] < 0 ? new AutomatonState() : result[classes[0]];
+        return new Automaton(start, out);
+    }
+
+    private static void keep(int state, int[] keptId, List<Integer> kept) {
+        if (keptId[state] < 0) {
+            keptId[state] = kept.size();
+            kept.add(state);
+        }
+    }
+
+    private static Set<AutomatonState> closure(AutomatonState state) {
+        Set<AutomatonState> closure = new HashSet<AutomatonState>();
+        List<AutomatonState> worklist = new ArrayList<AutomatonState>();
+        closure.add(state);
+        worklist.add(state);
+        while (!worklist.isEmpty()) {
+            for (AutomatonState target : worklist.remove(worklist.size() - 1).getEpsilonTransitions()) {
+                if (closure.add(target)) {
+                    worklist.add(target);
+                }
+            }
+        }
+        return closure;
+    }
+
+    private static boolean[] liveStates(List<Set<Long>> edges, boolean[] accepting) {
+        int n = accepting.length;
+        List<List<Integer>> predecessors = new ArrayList<List<Integer>>();
+        for (int q = 0; q < n; q++) {
+            predecessors.add(new ArrayList<Integer>());
+        }
+        for (int q = 0; q < n; q++) {
+            for (long e : edges.get(q)) {
+                predecessors.get(edgeTarget(e)).add(q);
+            }
+        }
+
+        boolean[] live = new boolean[n];
+        List<Integer> worklist = new ArrayList<Integer>();
+        for (int q = 0; q < n; q++) {
+            if (accepting[q]) {
+                live[q] = true;
+                worklist.add(q);
+            }
+        }
+        while (!worklist.isEmpty()) {
+            for (int p : predecessors.get(worklist.remove(worklist.size() - 1))) {
+                if (!live[p]) {
+                    live[p] = true;
+                    worklist.add(p);
+                }
+            }
+        }
+        return live;
+    }
+
+    // Partition refinement: states start out split by acceptance and are split further
+    // by the classes their transitions lead to, until no class splits any more. Dead
+    // states get class -1.
+    private static int[] mergeEquivalent(List<Set<Long>> edges, boolean[] accepting, boolean[] live) {
+        int n = accepting.length;
+        int[] classes = new int[n];
+        for (int q = 0; q < n; q++) {
+            classes[q] = !live[q] ? -1 : accepting[q] ? 1 : 0;
+        }
+
+        int classCount = -1;
+        while (true) {
+            Map<Signature, Integer> ids = new HashMap<Signature, Integer>();
+            int[] refined = new int[n];
+            for (int q = 0; q < n; q++) {
+                if (!live[q]) {
+                    refined[q] = -1;
+                    continue;
+                }
+                Signature signature = new Signature(classes[q], edges.get(q), classes);
+                Integer id = ids.get(signature);
+                if (id == null) {
+                    id = ids.size();
+                    ids.put(signature, id);
+                }
+                refined[q] = id;
+            }
+            classes = refined;
+            if (ids.size() == classCount) {
+                return classes;
+            }
+            classCount = ids.size();
+        }
+    }
+
+    // Edges are packed into a long: a character or class label on top, the target below
+    private static long edge(int label, int target) {
+        return ((long) label << 32) | target;
+    }
+
+    private static int edgeLabel(long edge) {
+        return (int) (edge >>> 32);
+    }
+
+    private static int edgeTarget(long edge) {
+        return (int) edge;
+    }
+
+    // A state's current class together with the set of (label, target class) pairs of
+    // its transitions into live states
+    private static final class Signature {
+        private final int currentClass;
+        private final long[] transitions;
+
+        Signature(int currentClass, Set<Long> edges, int[] classes) {
+            Set<Long> mapped = new HashSet<Long>();
+            for (long e : edges) {
+                int target = classes[edgeTarget(e)];
+                if (target >= 0) {
+                    mapped.add(edge(edgeLabel(e), target));
+                }
+            }
+            long[] transitions = new long[mapped.size()];
+            int i = 0;
+            for (long e : mapped) {
+                transitions[i++] = e;
+            }
+            Arrays.sort(transitions);
+            this.currentClass = currentClass;
+            this.transitions = transitions;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Signature that = (Signature) o;
+
+            return currentClass == that.currentClass && Arrays.equals(transitions, that.transitions);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * currentClass + Arrays.hashCode(transitions);
+        }
+    }
+}
@@ -1,18 +1,29 @@
 package edu.berkeley.eecs.cs164.pa1;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class represents a single state in an NFA, and keeps track of its outgoing
  * transitions. Empty transitions can be added or requested using null as a character.
+ * Transitions on a whole {@link CharClass} are kept apart from the single character
+ * ones, so a range like [a-z] costs one entry rather than 26.
+ * <p>
+ * Targets are kept in the order their transitions were added. For epsilon transitions
+ * that order is a priority: a {@link CaptureMatcher} prefers the paths through earlier
+ * transitions, which is how the parser makes quantifiers greedy and alternatives
+ * ordered. A state may also carry a capture slot, recording the offset it is entered at.
  */
 public class AutomatonState {
-    private static int maxId = 0;
+    private static final AtomicInteger maxId = new AtomicInteger();
     private final Map<Character, Set<AutomatonState>> transitions = new HashMap<Character, Set<AutomatonState>>();
+    private final Map<CharClass, Set<AutomatonState>> classTransitions = new HashMap<CharClass, Set<AutomatonState>>();
     private final int myId;
+    private int captureSlot = -1;
 
     public AutomatonState() {
-        myId = ++maxId;
+        // states are created from many threads when patterns are parsed in parallel
+        myId = maxId.incrementAndGet();
     }
 
     /**
@@ -23,7 +34,7 @@ public class AutomatonState {
     public void addEpsilonTransition(AutomatonState state) {
         Set<AutomatonState> automatonStates = transitions.get(null);
         if (automatonStates == null) {
-            automatonStates = new HashSet<AutomatonState>();
+            automatonStates = new LinkedHashSet<AutomatonState>();
         }
         automatonStates.add(state);
         transitions.put(null, automatonStates);
@@ -38,14 +49,30 @@ public class AutomatonState {
     public void addTransition(char ch, AutomatonState state) {
         Set<AutomatonState> automatonStates = transitions.get(ch);
         if (automatonStates == null) {
-            automatonStates = new HashSet<AutomatonState>();
+            automatonStates = new LinkedHashSet<AutomatonState>();
         }
         automatonStates.add(state);
         transitions.put(ch, automatonStates);
     }
 
     /**
-     * Gets the set of states reachable from this state via the given character
+     * Adds a transition taken on any character of a class
+     *
+     * @param cls   the characters to transition on
+     * @param state the state to transition to
+     */
+    public void addTransition(CharClass cls, AutomatonState state) {
+        Set<AutomatonState> automatonStates = classTransitions.get(cls);
+        if (automatonStates == null) {
+            automatonStates = new LinkedHashSet<AutomatonState>();
+        }
+        automatonStates.add(state);
+        classTransitions.put(cls, automatonStates);
+    }
+
+    /**
+     * Gets the set of states reachable from this state via the given character,
+     * including those reached through a class holding the character
      *
      * @param ch the character to follow
      * @return set of states
@@ -55,7 +82,19 @@ public class AutomatonState {
         if (states == null) {
             states = Collections.emptySet();
         }
-        return states;
+        if (classTransitions.isEmpty()) {
+            return states;
+        }
+        Set<AutomatonState> merged = null;
+        for (Map.Entry<CharClass, Set<AutomatonState>> entry : classTransitions.entrySet()) {
+            if (entry.getKey().contains(ch)) {
+                if (merged == null) {
+                    merged = new HashSet<AutomatonState>(states);
+                }
+                merged.addAll(entry.getValue());
+            }
+        }
+        return merged == null ? states : merged;
     }
 
     /**
@@ -71,15 +110,49 @@ public class AutomatonState {
         return states;
     }
 
+    /**
+     * Gets the single character and epsilon transitions; class transitions are listed
+     * by {@link #getClassTransitions()}
+     *
+     * @return the transitions keyed by label, null for epsilon
+     */
     public Set<Map.Entry<Character, Set<AutomatonState>>> getAllTransitions() {
         return transitions.entrySet();
     }
 
+    /**
+     * Gets the transitions taken on a class of characters
+     *
+     * @return the transitions keyed by class
+     */
+    public Set<Map.Entry<CharClass, Set<AutomatonState>>> getClassTransitions() {
+        return classTransitions.entrySet();
+    }
+
+    /**
+     * Marks this state as recording the current offset into a capture slot whenever it
+     * is entered. Slot 2g holds where group g starts and slot 2g+1 where it ends.
+     *
+     * @param slot the slot to record into, or -1 for none
+     */
+    public void setCaptureSlot(int slot) {
+        this.captureSlot = slot;
+    }
+
+    /**
+     * @return the capture slot this state records into, or -1 if it records nothing
+     */
+    public int getCaptureSlot() {
+        return captureSlot;
+    }
+
+    /**
+     * Hashes a state by its id, which never changes, so a state can sit in a hash based
+     * collection while transitions are still being added to it
+     */
     @Override
     public int hashCode() {
-        int result = transitions.keySet().hashCode();
-        result = 31 * result + getMyId();
-        return result;
+        return myId;
     }
 
     /**
@@ -91,14 +164,13 @@ public class AutomatonState {
         return myId;
     }
 
+    /**
+     * States are only equal to themselves: two states with the same transitions are still
+     * different states of the automaton
+     */
     @Override
     public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-
-        AutomatonState that = (AutomatonState) o;
-
-        return transitions.equals(that.transitions);
+        return this == o;
     }
 
     @Override
@@ -0,0 +1,125 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Matches many inputs against one pattern. Rather than building a new simulator per
+ * input, every thread keeps a single {@link LazyDfa} for the pattern, so the DFA states
+ * discovered by one input are reused by all later inputs, across batches.
+ * <p>
+ * Instances are thread safe.
+ */
+public class BatchMatcher {
+    private final Automaton nfa;
+    private final long maxCacheBytes;
+    private final ThreadLocal<LazyDfa> threadDfas = new ThreadLocal<LazyDfa>() {
+        @Override
+        protected LazyDfa initialValue() {
+            return new LazyDfa(nfa, maxCacheBytes);
+        }
+    };
+
+    /**
+     * Create a batch matcher with the default DFA cache size per thread
+     *
+     * @param nfa the pattern to match against
+     */
+    public BatchMatcher(Automaton nfa) {
+        this(nfa, LazyDfa.DEFAULT_MAX_CACHE_BYTES);
+    }
+
+    /**
+     * Create a batch matcher
+     *
+     * @param nfa           the pattern to match against
+     * @param maxCacheBytes approximate memory each thread's DFA cache may use
+     */
+    public BatchMatcher(Automaton nfa, long maxCacheBytes) {
+        if (maxCacheBytes <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxCacheBytes);
+        }
+        this.nfa = nfa;
+        this.maxCacheBytes = maxCacheBytes;
+    }
+
+    /**
+     * Matches every input on the calling thread
+     *
+     * @param inputs the texts to match
+     * @return the set of indices, in iteration order, of the accepted inputs
+     */
+    public BitSet matchAll(Iterable<String> inputs) {
+        LazyDfa dfa = threadDfas.get();
+        BitSet accepted = new BitSet();
+        int index = 0;
+        for (String input : inputs) {
+            if (dfa.matches(input)) {
+                accepted.set(index);
+            }
+            index++;
+        }
+        return accepted;
+    }
+
+    public BitSet matchAll(String[] inputs) {
+        return matchAll(Arrays.asList(inputs));
+    }
+
+    /**
+     * Matches the inputs on the given executor, split into one contiguous slice per
+     * part. Each worker thread uses its own DFA cache.
+     *
+     * @param inputs   the texts to match
+     * @param executor the executor to run the slices on
+     * @param parts    number of slices to split the inputs into
+     * @return the set of indices of the accepted inputs
+     * @throws IllegalStateException if matching a slice fails or the caller is interrupted
+     */
+    public BitSet matchAllParallel(final List<String> inputs, ExecutorService executor, int parts) {
+        if (parts <= 0) {
+            throw new IllegalArgumentException("Number of parts must be positive: " + parts);
+        }
+        int sliceSize = (inputs.size() + parts - 1) / parts;
+        List<Future<BitSet>> slices = new ArrayList<Future<BitSet>>();
+        for (int from = 0; from < inputs.size(); from += sliceSize) {
+            final int first = from;
+            final int last = Math.min(inputs.size(), from + sliceSize);
+            slices.add(executor.submit(new Callable<BitSet>() {
+                public BitSet call() {
+                    LazyDfa dfa = threadDfas.get();
+                    BitSet accepted = new BitSet();
+                    for (int i = first; i < last; i++) {
+                        if (dfa.matches(inputs.get(i))) {
+                            accepted.set(i);
+                        }
+                    }
+                    return accepted;
+                }
+            }));
+        }
+
+        BitSet accepted = new BitSet(inputs.size());
+        try {
+            for (Future<BitSet> slice : slices) {
+                accepted.or(slice.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while matching a batch", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Matching a batch failed", e.getCause());
+        }
+        return accepted;
+    }
+
+    public BitSet matchAllParallel(String[] inputs, ExecutorService executor, int parts) {
+        return matchAllParallel(Arrays.asList(inputs), executor, parts);
+    }
+}
@@ -0,0 +1,144 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+/**
+ * Simulates a small {@link GlushkovAutomaton} with the set of active positions packed
+ * into a single {@code long}: bit 0 is the initial state and bit {@code p} position
+ * {@code p}. Since every transition into a position carries that position's label, a
+ * step is
+ * <pre>
+ *     active = follow(active) &amp; mask(ch)
+ * </pre>
+ * where {@code mask(ch)} has the bits of the positions labelled with {@code ch}. The
+ * union of follow sets is looked up a byte at a time, in one table of 256 words per
+ * byte of the state, so a step costs at most eight loads, ORs and shifts no matter how
+ * many positions are active.
+ * <p>
+ * Only patterns with at most {@link #MAX_POSITIONS} positions fit. Matching keeps no
+ * state outside the call, so a matcher can be shared between threads.
+ */
+public class BitParallelMatcher {
+    /** Most positions a pattern may have; one more bit is taken by the initial state */
+    public static final int MAX_POSITIONS = 63;
+
+    private final AlphabetPartition alphabet;
+    private final long[] masks;
+    private final long[][] followTables;
+    private final long lastMask;
+
+    /**
+     * Create a matcher for the given NFA
+     *
+     * @param nfa the nfa to match against
+     * @throws IllegalArgumentException if the nfa has more than {@link #MAX_POSITIONS} positions
+     */
+    public BitParallelMatcher(Automaton nfa) {
+        this(GlushkovAutomaton.of(nfa), AlphabetPartition.of(nfa));
+    }
+
+    /**
+     * Create a matcher from an already built position automaton
+     *
+     * @param positions the position automaton to simulate
+     * @param alphabet  the character classes of the nfa the positions were built from
+     * @throws IllegalArgumentException if there are more than {@link #MAX_POSITIONS} positions
+     */
+    BitParallelMatcher(GlushkovAutomaton positions, AlphabetPartition alphabet) {
+        if (!fits(positions)) {
+            throw new IllegalArgumentException("Too many positions for a bit-parallel matcher: "
+                    + positions.getPositionCount());
+        }
+        int n = positions.getPositionCount() + 1;
+        this.alphabet = alphabet;
+
+        // characters of a class agree on every label, so one representative stands for all
+        masks = new long[alphabet.getClassCount()];
+        for (int c = 0; c < masks.length; c++) {
+            char ch = alphabet.getRepresentative(c);
+            for (int p = 1; p < n; p++) {
+                if (positions.accepts(p, ch)) {
+                    masks[c] |= 1L << p;
+                }
+            }
+        }
+
+        long[] follow = new long[n];
+        long last = 0;
+        for (int p = 0; p < n; p++) {
+            for (int q : positions.follow(p)) {
+                follow[p] |= 1L << q;
+            }
+            if (positions.isLast(p)) {
+                last |= 1L << p;
+            }
+        }
+        lastMask = last;
+
+        // followTables[k][b] is the union of the follow sets of the positions in byte k of the
+        // state whose bits are set in b, built from the entry with the lowest bit cleared
+        followTables = new long[(n + 7) / 8][256];
+        for (int k = 0; k < followTables.length; k++) {
+            for (int b = 1; b < 256; b++) {
+                int p = 8 * k + Integer.numberOfTrailingZeros(b);
+                followTables[k][b] = followTables[k][b & (b - 1)] | (p < n ? follow[p] : 0);
+            }
+        }
+    }
+
+    /**
+     * @param positions a position automaton
+     * @return true if a bit-parallel matcher can be built for it
+     */
+    public static boolean fits(GlushkovAutomaton positions) {
+        return positions.getPositionCount() <= MAX_POSITIONS;
+    }
+
+    /**
+     * Checks whether a bit-parallel matcher can be built for an NFA without building its
+     * position automaton, whose follow sets can take space quadratic in the pattern
+     *
+     * @param nfa the nfa to check
+     * @return true if the nfa's position automaton has few enough positions
+     */
+    public static boolean fits(Automaton nfa) {
+        return GlushkovAutomaton.countPositions(nfa, MAX_POSITIONS) <= MAX_POSITIONS;
+    }
+
+    /**
+     * Determines whether or not the given text is accepted
+     *
+     * @param text the text to try matching
+     * @return true if the text is accepted, else false
+     */
+    public boolean matches(CharSequence text) {
+        return scan(text) < 0;
+    }
+
+    /**
+     * Runs the position automaton over the given text
+     *
+     * @param text the text to try matching
+     * @return -1 if the text is accepted, the offset of the character no position could
+     *         consume, or the text's length if the whole text was read without accepting it
+     */
+    int scan(CharSequence text) {
+        long active = 1L;
+        for (int i = 0; i < text.length(); i++) {
+            long next = 0;
+            for (int k = 0; k < followTables.length; k++) {
+                next |= followTables[k][(int) (active >>> (8 * k)) & 0xff];
+            }
+            active = next & masks[alphabet.classOf(text.charAt(i))];
+            if (active == 0) {
+                return i;
+            }
+        }
+        return (active & lastMask) != 0 ? -1 : text.length();
+    }
+
+    /**
+     * @return approximate number of bytes used by the tables
+     */
+    public long getMemoryBytes() {
+        return 8L * (masks.length + 256L * followTables.length) + alphabet.getMemoryBytes();
+    }
+}
@@ -0,0 +1,246 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.util.Arrays;
+
+/**
+ * Simulates a {@link CompiledNfa} like a {@link PikeVM}, but every thread (state in
+ * the current set) also carries the offsets recorded by the capture slots it passed
+ * through, so a match reports where each group matched.
+ * <p>
+ * Threads are kept in priority order: epsilon transitions are followed depth first in
+ * the order they were added, and a state reached by a higher priority thread is not
+ * entered again by a lower one. The parser adds the transitions of quantifiers and
+ * alternations so that this order prefers greedy repetition and earlier alternatives,
+ * which gives the same groups a backtracking matcher would report, in O(n*m) time for
+ * n characters and m states.
+ * <p>
+ * The slot arrays are copy on write: a thread copies its array only when it enters a
+ * state that records a slot, and otherwise shares it with the thread it came from.
+ * A CaptureMatcher keeps its scratch space between calls and is therefore not thread
+ * safe; {@link CompiledNfa#getThreadCaptureMatcher()} keeps one per thread.
+ */
+public class CaptureMatcher {
+    // the nfa itself is not kept, so a matcher cached per thread never keeps it alive
+    private final int start;
+    private final int stateCount;
+    private final int[] charOffsets;
+    private final char[] charLabels;
+    private final int[] charTargets;
+    private final int[] epsilonOffsets;
+    private final int[] epsilonTargets;
+    private final int[] classOffsets;
+    private final CharClass[] classLabels;
+    private final int[] classTargets;
+    private final int[] captureSlots;
+    private final int slotCount;
+    private final int accept;
+
+    private SparseSet current;
+    private SparseSet next;
+    // the slots of the thread in each state of current and next, indexed by state
+    private int[][] currentSlots;
+    private int[][] nextSlots;
+    private final int[] stackStates;
+    private final int[][] stackSlots;
+
+    /**
+     * Create a matcher for the given NFA
+     *
+     * @param nfa the nfa to simulate
+     */
+    public CaptureMatcher(CompiledNfa nfa) {
+        this.start = nfa.getStartState();
+        this.stateCount = nfa.getStateCount();
+        this.charOffsets = nfa.getCharOffsets();
+        this.charLabels = nfa.getCharLabels();
+        this.charTargets = nfa.getCharTargets();
+        this.epsilonOffsets = nfa.getEpsilonOffsets();
+        this.epsilonTargets = nfa.getEpsilonTargets();
+        this.classOffsets = nfa.getClassOffsets();
+        this.classLabels = nfa.getClassLabels();
+        this.classTargets = nfa.getClassTargets();
+        this.captureSlots = nfa.getCaptureSlots();
+        this.slotCount = 2 * (nfa.getGroupCount() + 1);
+        this.accept = nfa.getAcceptState();
+
+        int n = nfa.getStateCount();
+        this.current = new SparseSet(n);
+        this.next = new SparseSet(n);
+        this.currentSlots = new int[n][];
+        this.nextSlots = new int[n][];
+        // every state is expanded at most once per step, so each epsilon edge is pushed at most once
+        this.stackStates = new int[nfa.getEpsilonEdgeCount() + 1];
+        this.stackSlots = new int[nfa.getEpsilonEdgeCount() + 1][];
+    }
+
+    /**
+     * Matches the whole text
+     *
+     * @param text the text to try matching
+     * @return the match and its groups, or null if the text is not accepted
+     */
+    public Match match(CharSequence text) {
+        return match(text, Long.MAX_VALUE);
+    }
+
+    /**
+     * Matches the whole text, giving up after maxSteps steps, where a step is one thread
+     * moved across one character
+     *
+     * @param text     the text to try matching
+     * @param maxSteps most steps the match may take
+     * @return the match and its groups, or null if the text is not accepted
+     * @throws ResourceLimitException if the match takes more than maxSteps steps
+     */
+    public Match match(CharSequence text, long maxSteps) {
+        long steps = 0;
+        current.clear();
+        addThread(current, currentSlots, start, startSlots(0), 0);
+        for (int i = 0; i < text.length(); i++) {
+            steps = countSteps(steps, maxSteps);
+            next.clear();
+            for (int j = 0; j < current.size(); j++) {
+                step(current.get(j), text.charAt(i), i + 1);
+            }
+            swap();
+            if (current.isEmpty()) {
+                return null;
+            }
+        }
+        // the first accepting thread is the preferred one
+        if (accept < stateCount && current.contains(accept)) {
+            return toMatch(currentSlots[accept], text.length());
+        }
+        return null;
+    }
+
+    /**
+     * Finds the leftmost match inside the text. Of the matches starting there the one
+     * preferred by greedy quantifiers and earlier alternatives is reported, which is not
+     * necessarily the longest.
+     *
+     * @param text the text to search
+     * @return the match and its groups, or null if no substring of the text is accepted
+     */
+    public Match find(CharSequence text) {
+        return find(text, Long.MAX_VALUE);
+    }
+
+    /**
+     * Finds the leftmost match inside the text like {@link #find(CharSequence)}, giving
+     * up after maxSteps steps
+     *
+     * @param text     the text to search
+     * @param maxSteps most steps the search may take
+     * @return the match and its groups, or null if no substring of the text is accepted
+     * @throws ResourceLimitException if the search takes more than maxSteps steps
+     */
+    public Match find(CharSequence text, long maxSteps) {
+        long steps = 0;
+        int[] matched = null;
+        int matchEnd = -1;
+        current.clear();
+        for (int i = 0; ; i++) {
+            // a thread starting here has the lowest priority of all, and none is needed
+            // once something has matched, since it could only start later
+            if (matched == null) {
+                addThread(current, currentSlots, start, startSlots(i), i);
+            }
+            steps = countSteps(steps, maxSteps);
+            next.clear();
+            for (int j = 0; j < current.size(); j++) {
+                int s = current.get(j);
+                if (s == accept) {
+                    // threads after this one have lower priority and can't win anymore
+                    matched = currentSlots[s];
+                    matchEnd = i;
+                    break;
+                }
+                if (i < text.length()) {
+                    step(s, text.charAt(i), i + 1);
+                }
+            }
+            swap();
+            if (i == text.length() || (matched != null && current.isEmpty())) {
+                return matched == null ? null : toMatch(matched, matchEnd);
+            }
+        }
+    }
+
+    // Adds the threads about to move to the steps taken so far
+    private long countSteps(long steps, long maxSteps) {
+        steps += current.size();
+        if (steps > maxSteps) {
+            throw new ResourceLimitException("Match exceeded the limit of " + maxSteps + " steps.");
+        }
+        return steps;
+    }
+
+    // Moves the thread in state s across ch into next
+    private void step(int s, char ch, int pos) {
+        int[] slots = currentSlots[s];
+        // labels are sorted, so stop as soon as they pass ch
+        for (int e = charOffsets[s]; e < charOffsets[s + 1] && charLabels[e] <= ch; e++) {
+            if (charLabels[e] == ch) {
+                addThread(next, nextSlots, charTargets[e], slots, pos);
+            }
+        }
+        for (int e = classOffsets[s]; e < classOffsets[s + 1]; e++) {
+            if (classLabels[e].contains(ch)) {
+                addThread(next, nextSlots, classTargets[e], slots, pos);
+            }
+        }
+    }
+
+    // Adds a thread and everything epsilon reachable from it to the set, depth first and
+    // in priority order, recording pos into the slots of the states that capture
+    private void addThread(SparseSet set, int[][] setSlots, int state, int[] slots, int pos) {
+        int top = 0;
+        stackStates[top] = state;
+        stackSlots[top] = slots;
+        top++;
+        while (top > 0) {
+            top--;
+            int s = stackStates[top];
+            int[] threadSlots = stackSlots[top];
+            stackSlots[top] = null;
+            if (!set.add(s)) {
+                continue;
+            }
+            if (captureSlots[s] >= 0) {
+                // other threads may share the array, so it is copied before writing
+                threadSlots = threadSlots.clone();
+                threadSlots[captureSlots[s]] = pos;
+            }
+            setSlots[s] = threadSlots;
+            // pushed in reverse so the first transition is followed first
+            for (int e = epsilonOffsets[s + 1] - 1; e >= epsilonOffsets[s]; e--) {
+                if (!set.contains(epsilonTargets[e])) {
+                    stackStates[top] = epsilonTargets[e];
+                    stackSlots[top] = threadSlots;
+                    top++;
+                }
+            }
+        }
+    }
+
+    private int[] startSlots(int pos) {
+        int[] slots = new int[slotCount];
+        Arrays.fill(slots, -1);
+        slots[0] = pos;
+        return slots;
+    }
+
+    private Match toMatch(int[] slots, int end) {
+        return new Match(slots[0], end, Arrays.copyOfRange(slots, 2, slots.length));
+    }
+
+    private void swap() {
+        SparseSet set = current;
+        current = next;
+        next = set;
+        int[][] slots = currentSlots;
+        currentSlots = nextSlots;
+        nextSlots = slots;
+    }
+}
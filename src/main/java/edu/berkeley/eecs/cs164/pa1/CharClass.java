@@ -0,0 +1,190 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable set of characters, used as the label of a single transition instead of
+ * one transition per character. Membership is a constant time lookup in a two level
+ * bitmap: the high byte of a character picks a 256-bit page and the low byte a bit in
+ * it. Pages that are completely empty or completely full are shared, so a class only
+ * pays for the pages its range boundaries fall in.
+ */
+public class CharClass {
+    private static final long[] EMPTY_PAGE = new long[4];
+    private static final long[] FULL_PAGE = {-1L, -1L, -1L, -1L};
+
+    /** Any character except a newline, as matched by '.' */
+    public static final CharClass ANY_BUT_NEWLINE = new CharClass(new char[]{0, '\n' - 1, '\n' + 1, Character.MAX_VALUE});
+    /** The digits 0-9, as matched by \d */
+    public static final CharClass DIGIT = new CharClass(new char[]{'0', '9'});
+    /** Letters, digits and underscore, as matched by \w */
+    public static final CharClass WORD = new CharClass(new char[]{'0', '9', 'A', 'Z', '_', '_', 'a', 'z'});
+    /** Space, tab, newline, vertical tab, form feed and carriage return, as matched by \s */
+    public static final CharClass SPACE = new CharClass(new char[]{'\t', '\r', ' ', ' '});
+
+    // sorted, disjoint and non-adjacent inclusive ranges: lo0, hi0, lo1, hi1, ...
+    private final char[] ranges;
+    private final long[][] pages = new long[256][];
+
+    private CharClass(char[] ranges) {
+        this.ranges = ranges;
+        Arrays.fill(pages, EMPTY_PAGE);
+        for (int i = 0; i < ranges.length; i += 2) {
+            int lo = ranges[i];
+            int hi = ranges[i + 1];
+            for (int page = lo >>> 8; page <= hi >>> 8; page++) {
+                int from = Math.max(lo, page << 8);
+                int to = Math.min(hi, (page << 8) | 0xff);
+                if (from == page << 8 && to == ((page << 8) | 0xff)) {
+                    pages[page] = FULL_PAGE;
+                    continue;
+                }
+                if (pages[page] == EMPTY_PAGE) {
+                    pages[page] = new long[4];
+                }
+                for (int ch = from; ch <= to; ch++) {
+                    pages[page][(ch >>> 6) & 3] |= 1L << ch;
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a class holding a single range of characters
+     *
+     * @param lo the first character of the range
+     * @param hi the last character of the range, not below lo
+     * @return the class
+     */
+    public static CharClass range(char lo, char hi) {
+        if (lo > hi) {
+            throw new IllegalArgumentException("Empty range: " + lo + "-" + hi);
+        }
+        return new CharClass(new char[]{lo, hi});
+    }
+
+    /**
+     * Creates a class from inclusive ranges in any order; they may overlap
+     *
+     * @param ranges pairs of first and last characters
+     * @return the class
+     */
+    public static CharClass of(char... ranges) {
+        if (ranges.length % 2 != 0) {
+            throw new IllegalArgumentException("Ranges must come in pairs");
+        }
+        List<int[]> pairs = new ArrayList<int[]>();
+        for (int i = 0; i < ranges.length; i += 2) {
+            if (ranges[i] > ranges[i + 1]) {
+                throw new IllegalArgumentException("Empty range: " + ranges[i] + "-" + ranges[i + 1]);
+            }
+            pairs.add(new int[]{ranges[i], ranges[i + 1]});
+        }
+        return new CharClass(normalize(pairs));
+    }
+
+    /**
+     * @return a class holding every character not in this one
+     */
+    public CharClass negate() {
+        List<int[]> pairs = new ArrayList<int[]>();
+        int next = 0;
+        for (int i = 0; i < ranges.length; i += 2) {
+            if (ranges[i] > next) {
+                pairs.add(new int[]{next, ranges[i] - 1});
+            }
+            next = ranges[i + 1] + 1;
+        }
+        if (next <= Character.MAX_VALUE) {
+            pairs.add(new int[]{next, Character.MAX_VALUE});
+        }
+        return new CharClass(normalize(pairs));
+    }
+
+    /**
+     * @param other the class to add
+     * @return a class holding the characters of both classes
+     */
+    public CharClass union(CharClass other) {
+        char[] both = Arrays.copyOf(ranges, ranges.length + other.ranges.length);
+        System.arraycopy(other.ranges, 0, both, ranges.length, other.ranges.length);
+        return of(both);
+    }
+
+    public boolean contains(char ch) {
+        return (pages[ch >>> 8][(ch >>> 6) & 3] & (1L << ch)) != 0;
+    }
+
+    public boolean isEmpty() {
+        return ranges.length == 0;
+    }
+
+    /**
+     * @return the sorted, disjoint inclusive ranges of the class as lo, hi pairs
+     */
+    char[] getRanges() {
+        return ranges;
+    }
+
+    // Sorts and merges overlapping or adjacent ranges
+    private static char[] normalize(List<int[]> pairs) {
+        int[][] sorted = pairs.toArray(new int[pairs.size()][]);
+        Arrays.sort(sorted, new java.util.Comparator<int[]>() {
+            public int compare(int[] a, int[] b) {
+                return a[0] - b[0];
+            }
+        });
+        char[] merged = new char[2 * sorted.length];
+        int size = 0;
+        for (int[] pair : sorted) {
+            if (size > 0 && pair[0] <= merged[size - 1] + 1) {
+                merged[size - 1] = (char) Math.max(merged[size - 1], pair[1]);
+            } else {
+                merged[size++] = (char) pair[0];
+                merged[size++] = (char) pair[1];
+            }
+        }
+        return Arrays.copyOf(merged, size);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        CharClass that = (CharClass) o;
+
+        return Arrays.equals(ranges, that.ranges);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(ranges);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < ranges.length; i += 2) {
+            appendChar(builder, ranges[i]);
+            if (ranges[i + 1] != ranges[i]) {
+                builder.append('-');
+                appendChar(builder, ranges[i + 1]);
+            }
+        }
+        return builder.append(']').toString();
+    }
+
+    private static void appendChar(StringBuilder builder, char ch) {
+        if (ch < ' ' || ch > '~') {
+            builder.append(String.format("\\u%04x", (int) ch));
+        } else {
+            if (ch == ']' || ch == '\\' || ch == '-' || ch == '^') {
+                builder.append('\\');
+            }
+            builder.append(ch);
+        }
+    }
+}
@@ -0,0 +1,405 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * A frozen copy of an {@link Automaton} laid out in flat primitive arrays. States are
+ * numbered 0..n-1 in breadth first order from the start state, so the start state is
+ * always 0. The outgoing edges of state {@code s} live in the slice
+ * {@code [offsets[s], offsets[s + 1])} of the edge arrays, with character edges sorted
+ * by label. Epsilon edges and {@link CharClass} edges are kept in adjacency arrays of
+ * their own.
+ * <p>
+ * The epsilon closure of every state a match can enter (the start state and the target
+ * of every character or class edge) is computed once, when the NFA is compiled, and
+ * stored the same way, so a step only has to union precomputed closures. If the
+ * closures together would hold more than {@link #MAX_CLOSURE_TABLE_STATES} entries the
+ * table is left out and closures are followed edge by edge instead.
+ * <p>
+ * The capture slot of every state (see {@link AutomatonState#setCaptureSlot(int)}) is
+ * kept too, for a {@link CaptureMatcher}; the other matchers ignore it.
+ * <p>
+ * Instances are immutable and can be shared between threads; matching goes through a
+ * {@link PikeVM} kept per thread.
+ */
+public class CompiledNfa {
+    /** Largest total number of entries kept in the closure table */
+    public static final int MAX_CLOSURE_TABLE_STATES = 1 << 20;
+
+    private final int accept;
+    private final int[] charOffsets;
+    private final char[] charLabels;
+    private final int[] charTargets;
+    private final int[] epsilonOffsets;
+    private final int[] epsilonTargets;
+    private final int[] classOffsets;
+    private final CharClass[] classLabels;
+    private final int[] classTargets;
+    private final int[] captureSlots;
+    private final int groupCount;
+    private final int[] closureOffsets;
+    private final int[] closureStates;
+
+    // Every thread maps the nfas it has matched with to its matchers for them. The keys
+    // are weak and the matchers only hold an nfa's arrays, never the nfa itself, so an
+    // nfa nobody else references can still be collected; its matchers go the next time
+    // the thread uses the map.
+    private static final ThreadLocal<WeakHashMap<CompiledNfa, PikeVM>> THREAD_MATCHERS =
+            new ThreadLocal<WeakHashMap<CompiledNfa, PikeVM>>() {
+                @Override
+                protected WeakHashMap<CompiledNfa, PikeVM> initialValue() {
+                    return new WeakHashMap<CompiledNfa, PikeVM>();
+                }
+            };
+    private static final ThreadLocal<WeakHashMap<CompiledNfa, CaptureMatcher>> THREAD_CAPTURE_MATCHERS =
+            new ThreadLocal<WeakHashMap<CompiledNfa, CaptureMatcher>>() {
+                @Override
+                protected WeakHashMap<CompiledNfa, CaptureMatcher> initialValue() {
+                    return new WeakHashMap<CompiledNfa, CaptureMatcher>();
+                }
+            };
+
+    CompiledNfa(int accept, int[] charOffsets, char[] charLabels, int[] charTargets,
+                        int[] epsilonOffsets, int[] epsilonTargets,
+                        int[] classOffsets, CharClass[] classLabels, int[] classTargets,
+                        int[] captureSlots, int groupCount) {
+        this.accept = accept;
+        this.charOffsets = charOffsets;
+        this.charLabels = charLabels;
+        this.charTargets = charTargets;
+        this.epsilonOffsets = epsilonOffsets;
+        this.epsilonTargets = epsilonTargets;
+        this.classOffsets = classOffsets;
+        this.classLabels = classLabels;
+        this.classTargets = classTargets;
+        this.captureSlots = captureSlots;
+        this.groupCount = groupCount;
+        int[][] closures = computeClosures();
+        this.closureOffsets = closures == null ? null : closures[0];
+        this.closureStates = closures == null ? null : closures[1];
+    }
+
+    /**
+     * Freezes the given NFA. States that cannot be reached from its start state are
+     * left out.
+     *
+     * @param nfa the nfa to compile
+     * @return the compiled form of the nfa
+     */
+    public static CompiledNfa compile(Automaton nfa) {
+        // number the states in breadth first order
+        Map<AutomatonState, Integer> ids = new HashMap<AutomatonState, Integer>();
+        List<AutomatonState> states = new ArrayList<AutomatonState>();
+        ids.put(nfa.getStart(), 0);
+        states.add(nfa.getStart());
+        int charEdges = 0;
+        int epsilonEdges = 0;
+        int classEdges = 0;
+        for (int i = 0; i < states.size(); i++) {
+            for (Map.Entry<Character, Set<AutomatonState>> entry : states.get(i).getAllTransitions()) {
+                if (entry.getKey() == null) {
+                    epsilonEdges += entry.getValue().size();
+                } else {
+                    charEdges += entry.getValue().size();
+                }
+                for (AutomatonState target : entry.getValue()) {
+                    if (!ids.containsKey(target)) {
+                        ids.put(target, states.size());
+                        states.add(target);
+                    }
+                }
+            }
+            for (Map.Entry<CharClass, Set<AutomatonState>> entry : states.get(i).getClassTransitions()) {
+                classEdges += entry.getValue().size();
+                for (AutomatonState target : entry.getValue()) {
+                    if (!ids.containsKey(target)) {
+                        ids.put(target, states.size());
+                        states.add(target);
+                    }
+                }
+            }
+        }
+
+        // the out state may be unreachable, in which case it gets a number of its own
+        Integer accept = ids.get(nfa.getOut());
+        int n = states.size();
+
+        int[] charOffsets = new int[n + 1];
+        char[] charLabels = new char[charEdges];
+        int[] charTargets = new int[charEdges];
+        int[] epsilonOffsets = new int[n + 1];
+        int[] epsilonTargets = new int[epsilonEdges];
+        int[] classOffsets = new int[n + 1];
+        CharClass[] classLabels = new CharClass[classEdges];
+        int[] classTargets = new int[classEdges];
+        int[] captureSlots = new int[n];
+        int groupCount = nfa.getGroupCount();
+        int charAt = 0;
+        int epsilonAt = 0;
+        int classAt = 0;
+        for (int s = 0; s < n; s++) {
+            AutomatonState state = states.get(s);
+            charOffsets[s] = charAt;
+            epsilonOffsets[s] = epsilonAt;
+            classOffsets[s] = classAt;
+            captureSlots[s] = state.getCaptureSlot();
+            groupCount = Math.max(groupCount, state.getCaptureSlot() / 2);
+
+            // kept in the order they were added, which is their priority
+            for (AutomatonState target : state.getEpsilonTransitions()) {
+                epsilonTargets[epsilonAt++] = ids.get(target);
+            }
+
+            for (Map.Entry<CharClass, Set<AutomatonState>> entry : state.getClassTransitions()) {
+                for (AutomatonState target : entry.getValue()) {
+                    classLabels[classAt] = entry.getKey();
+                    classTargets[classAt] = ids.get(target);
+                    classAt++;
+                }
+            }
+
+            List<Character> labels = new ArrayList<Character>();
+            for (Map.Entry<Character, Set<AutomatonState>> entry : state.getAllTransitions()) {
+                if (entry.getKey() != null) {
+                    labels.add(entry.getKey());
+                }
+            }
+            Character[] sorted = labels.toArray(new Character[labels.size()]);
+            Arrays.sort(sorted);
+            for (char label : sorted) {
+                for (AutomatonState target : literalTransitions(state, label)) {
+                    charLabels[charAt] = label;
+                    charTargets[charAt] = ids.get(target);
+                    charAt++;
+                }
+            }
+        }
+        charOffsets[n] = charAt;
+        epsilonOffsets[n] = epsilonAt;
+        classOffsets[n] = classAt;
+
+        return new CompiledNfa(accept == null ? n : accept, charOffsets, charLabels, charTargets,
+                epsilonOffsets, epsilonTargets, classOffsets, classLabels, classTargets,
+                captureSlots, groupCount);
+    }
+
+    // Finds the closure of every state a match can enter with an explicit worklist, returning
+    // {offsets, states} in the same layout as the edges, or null if it would get too big.
+    private int[][] computeClosures() {
+        int n = getStateCount();
+        boolean[] entered = new boolean[n];
+        if (n > 0) {
+            entered[0] = true;
+        }
+        for (int target : charTargets) {
+            entered[target] = true;
+        }
+        for (int target : classTargets) {
+            entered[target] = true;
+        }
+
+        int[] offsets = new int[n + 1];
+        int[] states = new int[Math.min(4 * n, MAX_CLOSURE_TABLE_STATES)];
+        SparseSet closure = new SparseSet(n);
+        int[] worklist = new int[n];
+        int size = 0;
+        for (int s = 0; s < n; s++) {
+            offsets[s] = size;
+            if (!entered[s]) {
+                continue;
+            }
+            closure.clear();
+            closure.add(s);
+            int top = 0;
+            worklist[top++] = s;
+            while (top > 0) {
+                int from = worklist[--top];
+                for (int e = epsilonOffsets[from]; e < epsilonOffsets[from + 1]; e++) {
+                    if (closure.add(epsilonTargets[e])) {
+                        worklist[top++] = epsilonTargets[e];
+                    }
+                }
+            }
+            if (size + closure.size() > MAX_CLOSURE_TABLE_STATES) {
+                return null;
+            }
+            if (size + closure.size() > states.length) {
+                states = Arrays.copyOf(states, Math.min(Math.max(2 * states.length, size + closure.size()),
+                        MAX_CLOSURE_TABLE_STATES));
+            }
+            for (int i = 0; i < closure.size(); i++) {
+                states[size++] = closure.get(i);
+            }
+        }
+        offsets[n] = size;
+        return new int[][]{offsets, Arrays.copyOf(states, size)};
+    }
+
+    // The targets of the single character transitions on label, leaving out classes
+    private static Set<AutomatonState> literalTransitions(AutomatonState state, char label) {
+        for (Map.Entry<Character, Set<AutomatonState>> entry : state.getAllTransitions()) {
+            if (entry.getKey() != null && entry.getKey() == label) {
+                return entry.getValue();
+            }
+        }
+        return Collections.emptySet();
+    }
+
+    /**
+     * @return number of states; valid state numbers are 0..getStateCount()-1
+     */
+    public int getStateCount() {
+        return charOffsets.length - 1;
+    }
+
+    public int getStartState() {
+        return 0;
+    }
+
+    /**
+     * @return the accepting state, or {@link #getStateCount()} if it cannot be reached
+     */
+    public int getAcceptState() {
+        return accept;
+    }
+
+    public int getCharEdgeCount() {
+        return charTargets.length;
+    }
+
+    public int getEpsilonEdgeCount() {
+        return epsilonTargets.length;
+    }
+
+    public int getClassEdgeCount() {
+        return classTargets.length;
+    }
+
+    /**
+     * @return number of capture groups, not counting the whole match
+     */
+    public int getGroupCount() {
+        return groupCount;
+    }
+
+    /**
+     * @return true if the epsilon closures were precomputed
+     */
+    public boolean hasClosureTable() {
+        return closureOffsets != null;
+    }
+
+    /**
+     * @return approximate number of bytes used by the edge arrays and closure table
+     */
+    public long getMemoryBytes() {
+        long bytes = 4L * (charOffsets.length + charTargets.length + epsilonOffsets.length + epsilonTargets.length
+                + classOffsets.length + classTargets.length + classLabels.length + captureSlots.length)
+                + 2L * charLabels.length;
+        if (closureOffsets != null) {
+            bytes += 4L * (closureOffsets.length + closureStates.length);
+        }
+        return bytes;
+    }
+
+    int[] getCharOffsets() {
+        return charOffsets;
+    }
+
+    char[] getCharLabels() {
+        return charLabels;
+    }
+
+    int[] getCharTargets() {
+        return charTargets;
+    }
+
+    int[] getEpsilonOffsets() {
+        return epsilonOffsets;
+    }
+
+    int[] getEpsilonTargets() {
+        return epsilonTargets;
+    }
+
+    int[] getClassOffsets() {
+        return classOffsets;
+    }
+
+    CharClass[] getClassLabels() {
+        return classLabels;
+    }
+
+    int[] getClassTargets() {
+        return classTargets;
+    }
+
+    /**
+     * @return the slot each state records its offset into, or -1
+     */
+    int[] getCaptureSlots() {
+        return captureSlots;
+    }
+
+    /**
+     * @return where each state's closure starts in {@link #getClosureStates()}, or null
+     * if there is no closure table
+     */
+    int[] getClosureOffsets() {
+        return closureOffsets;
+    }
+
+    int[] getClosureStates() {
+        return closureStates;
+    }
+
+    /**
+     * Gets the matcher reserved for the calling thread, creating it on first use. The
+     * matcher must not be handed to other threads.
+     *
+     * @return this thread's matcher for the nfa
+     */
+    public PikeVM getThreadMatcher() {
+        WeakHashMap<CompiledNfa, PikeVM> matchers = THREAD_MATCHERS.get();
+        PikeVM matcher = matchers.get(this);
+        if (matcher == null) {
+            matcher = new PikeVM(this);
+            matchers.put(this, matcher);
+        }
+        return matcher;
+    }
+
+    /**
+     * Gets the capture matcher reserved for the calling thread, creating it on first use.
+     * The matcher must not be handed to other threads.
+     *
+     * @return this thread's capture matcher for the nfa
+     */
+    public CaptureMatcher getThreadCaptureMatcher() {
+        WeakHashMap<CompiledNfa, CaptureMatcher> matchers = THREAD_CAPTURE_MATCHERS.get();
+        CaptureMatcher matcher = matchers.get(this);
+        if (matcher == null) {
+            matcher = new CaptureMatcher(this);
+            matchers.put(this, matcher);
+        }
+        return matcher;
+    }
+
+    /**
+     * Determines whether or not the given text is accepted by the NFA, using the
+     * calling thread's {@link PikeVM}
+     *
+     * @param text the text to try matching
+     * @return true if the text is accepted, else false
+     */
+    public boolean matches(CharSequence text) {
+        return getThreadMatcher().matches(text);
+    }
+}
@@ -0,0 +1,91 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+/**
+ * A deterministic automaton stored as a dense transition table. Columns are the
+ * character classes of an {@link AlphabetPartition} rather than characters, so row
+ * {@code s} of the table holds the successor of state {@code s} for every class and
+ * the table is only as wide as the number of characters the pattern tells apart.
+ * State {@link #DEAD_STATE} is a non-accepting sink; once a match reaches it the input
+ * can be rejected.
+ * <p>
+ * Instances are produced by {@link DfaCompiler} and are immutable.
+ */
+public class Dfa {
+    /** The non-accepting state every missing transition leads to */
+    public static final int DEAD_STATE = 0;
+
+    private final AlphabetPartition alphabet;
+    private final int[] table;
+    private final long[] accepting;
+    private final int start;
+    private final int unminimizedStateCount;
+
+    Dfa(AlphabetPartition alphabet, int[] table, long[] accepting, int start, int unminimizedStateCount) {
+        this.alphabet = alphabet;
+        this.table = table;
+        this.accepting = accepting;
+        this.start = start;
+        this.unminimizedStateCount = unminimizedStateCount;
+    }
+
+    public int getStartState() {
+        return start;
+    }
+
+    /**
+     * @return number of states in this (minimized) DFA, including the dead state
+     */
+    public int getStateCount() {
+        return table.length / alphabet.getClassCount();
+    }
+
+    /**
+     * @return number of states the subset construction produced before minimization
+     */
+    public int getUnminimizedStateCount() {
+        return unminimizedStateCount;
+    }
+
+    /**
+     * @return the character classes indexing the columns of the table
+     */
+    public AlphabetPartition getAlphabet() {
+        return alphabet;
+    }
+
+    /**
+     * @return approximate number of bytes used by the transition table, accepting bitmap and class map
+     */
+    public long getTableBytes() {
+        return 4L * table.length + 8L * accepting.length + alphabet.getMemoryBytes();
+    }
+
+    /**
+     * Gets the state reached from the given state on the given character
+     *
+     * @param state the state to start from
+     * @param ch    the character to follow
+     * @return the next state
+     */
+    public int getTransition(int state, char ch) {
+        return table[state * alphabet.getClassCount() + alphabet.classOf(ch)];
+    }
+
+    public boolean isAccepting(int state) {
+        return (accepting[state >>> 6] & (1L << state)) != 0;
+    }
+
+    int[] getTable() {
+        return table;
+    }
+
+    long[] getAccepting() {
+        return accepting;
+    }
+
+    @Override
+    public String toString() {
+        return "Dfa[states=" + getStateCount() + ", classes=" + alphabet.getClassCount()
+                + ", unminimized=" + unminimizedStateCount + "]";
+    }
+}
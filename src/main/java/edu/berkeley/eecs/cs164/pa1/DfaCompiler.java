@@ -0,0 +1,314 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Converts an NFA into a minimal {@link Dfa} ahead of time. The characters are first
+ * split into the classes of an {@link AlphabetPartition}; the NFA is then determinized
+ * with the subset construction, one column per class, and the result is minimized with
+ * Hopcroft's partition refinement algorithm.
+ * <p>
+ * The subset construction can need exponentially many states in the size of the NFA,
+ * so it gives up with a {@link ResourceLimitException} once it has built more than a
+ * given number of them. Every DFA state also keeps the set of NFA states behind it
+ * until minimization, and few DFA states can still hold large sets, so the sizes of
+ * those sets are summed against a second limit.
+ */
+public class DfaCompiler {
+    /** Most DFA states {@link #compile(Automaton)} builds before giving up */
+    public static final int DEFAULT_MAX_STATES = 1 << 16;
+
+    /** Most NFA states, summed over all DFA states, {@link #compile(Automaton)} keeps */
+    public static final long DEFAULT_MAX_SUBSET_ENTRIES = 1 << 21;
+
+    private DfaCompiler() {
+    }
+
+    /**
+     * Compiles the given NFA into a minimal DFA
+     *
+     * @param nfa the nfa to compile
+     * @return an equivalent minimal dfa
+     * @throws ResourceLimitException if determinizing needs more than
+     *                                {@link #DEFAULT_MAX_STATES} states or
+     *                                {@link #DEFAULT_MAX_SUBSET_ENTRIES} subset entries
+     */
+    public static Dfa compile(Automaton nfa) {
+        return compile(nfa, DEFAULT_MAX_STATES);
+    }
+
+    /**
+     * Compiles the given NFA into a minimal DFA, unless the subset construction needs
+     * more than maxStates states before minimization
+     *
+     * @param nfa       the nfa to compile
+     * @param maxStates most states, the dead state included, the subset construction may build
+     * @return an equivalent minimal dfa
+     * @throws ResourceLimitException if determinizing needs more than maxStates states or
+     *                                {@link #DEFAULT_MAX_SUBSET_ENTRIES} subset entries
+     */
+    public static Dfa compile(Automaton nfa, int maxStates) {
+        return compile(nfa, maxStates, DEFAULT_MAX_SUBSET_ENTRIES);
+    }
+
+    /**
+     * Compiles the given NFA into a minimal DFA, unless the subset construction needs
+     * more than maxStates states, or its states together stand for more than
+     * maxSubsetEntries NFA states, before minimization
+     *
+     * @param nfa              the nfa to compile
+     * @param maxStates        most states, the dead state included, the subset construction may build
+     * @param maxSubsetEntries most NFA states, summed over the subset construction's states,
+     *                         it may keep
+     * @return an equivalent minimal dfa
+     * @throws ResourceLimitException if determinizing needs more than maxStates states or
+     *                                maxSubsetEntries subset entries
+     */
+    public static Dfa compile(Automaton nfa, int maxStates, long maxSubsetEntries) {
+        AlphabetPartition alphabet = AlphabetPartition.of(nfa);
+        List<HashSet<AutomatonState>> subsets = new ArrayList<HashSet<AutomatonState>>();
+        int[] table = determinize(nfa, alphabet, subsets, maxStates, maxSubsetEntries);
+        int stateCount = subsets.size();
+
+        boolean[] accepting = new boolean[stateCount];
+        for (int s = 0; s < stateCount; s++) {
+            accepting[s] = subsets.get(s).contains(nfa.getOut());
+        }
+
+        // state 1 is always the closure of the nfa's start state
+        return minimize(alphabet, table, accepting, 1);
+    }
+
+    // Runs the subset construction. State 0 is the empty (dead) set and state 1 is the
+    // start state; subsets receives the set of nfa states behind every dfa state. Each
+    // class is followed through its smallest character, which stands for all the others.
+    private static int[] determinize(Automaton nfa, AlphabetPartition alphabet,
+                                     List<HashSet<AutomatonState>> subsets, int maxStates,
+                                     long maxSubsetEntries) {
+        int classCount = alphabet.getClassCount();
+        Map<Set<AutomatonState>, Integer> ids = new HashMap<Set<AutomatonState>, Integer>();
+        HashSet<AutomatonState> dead = new HashSet<AutomatonState>();
+        subsets.add(dead);
+        ids.put(dead, 0);
+
+        HashSet<AutomatonState> initial = new HashSet<AutomatonState>();
+        initial.add(nfa.getStart());
+        HashSet<AutomatonState> start = NFASimulator.getEpsilonClosure(initial);
+        subsets.add(start);
+        ids.put(start, 1);
+        long entries = start.size();
+        checkEntries(entries, maxSubsetEntries);
+
+        int[] table = new int[16 * classCount];
+        for (int s = 1; s < subsets.size(); s++) {
+            HashSet<AutomatonState> current = subsets.get(s);
+
+            // only classes some member can actually consume lead anywhere but the dead state
+            boolean[] used = new boolean[classCount];
+            for (AutomatonState state : current) {
+                for (Map.Entry<Character, Set<AutomatonState>> entry : state.getAllTransitions()) {
+                    if (entry.getKey() != null) {
+                        used[alphabet.classOf(entry.getKey())] = true;
+                    }
+                }
+                for (Map.Entry<CharClass, Set<AutomatonState>> entry : state.getClassTransitions()) {
+                    for (int c = 0; c < classCount; c++) {
+                        if (entry.getKey().contains(alphabet.getRepresentative(c))) {
+                            used[c] = true;
+                        }
+                    }
+                }
+            }
+
+            for (int c = 0; c < classCount; c++) {
+                if (!used[c]) {
+                    continue;
+                }
+                HashSet<AutomatonState> target = NFASimulator.getEpsilonClosure(
+                        NFASimulator.getCharacterEnclosure(current, alphabet.getRepresentative(c)));
+                Integer id = ids.get(target);
+                if (id == null) {
+                    if (subsets.size() >= maxStates) {
+                        throw new ResourceLimitException("Determinizing needs more than " + maxStates
+                                + " DFA states.");
+                    }
+                    entries += target.size();
+                    checkEntries(entries, maxSubsetEntries);
+                    id = subsets.size();
+                    subsets.add(target);
+                    ids.put(target, id);
+                }
+                if ((s + 1) * classCount > table.length) {
+                    table = Arrays.copyOf(table, table.length * 2);
+                }
+                table[s * classCount + c] = id;
+            }
+        }
+        return Arrays.copyOf(table, subsets.size() * classCount);
+    }
+
+    private static void checkEntries(long entries, long maxSubsetEntries) {
+        if (entries > maxSubsetEntries) {
+            throw new ResourceLimitException("Determinizing needs more than " + maxSubsetEntries
+                    + " NFA states across its DFA states.");
+        }
+    }
+
+    // Hopcroft's algorithm. Blocks of the partition are kept as contiguous ranges of the
+    // elements array, so splitting a block only swaps members around inside its range.
+    private static Dfa minimize(AlphabetPartition alphabet, int[] table, boolean[] accepting, int start) {
+        int n = accepting.length;
+        int classCount = alphabet.getClassCount();
+
+        // inverse transitions: for each class, the predecessors of every state, CSR style
+        int[][] inverseStart = new int[classCount][];
+        int[][] inverse = new int[classCount][];
+        for (int c = 0; c < classCount; c++) {
+            int[] offsets = new int[n + 1];
+            for (int s = 0; s < n; s++) {
+                offsets[table[s * classCount + c] + 1]++;
+            }
+            for (int t = 0; t < n; t++) {
+                offsets[t + 1] += offsets[t];
+            }
+            int[] fill = Arrays.copyOf(offsets, n);
+            int[] sources = new int[n];
+            for (int s = 0; s < n; s++) {
+                sources[fill[table[s * classCount + c]]++] = s;
+            }
+            inverseStart[c] = offsets;
+            inverse[c] = sources;
+        }
+
+        int[] elements = new int[n];
+        int[] location = new int[n];
+        int[] blockOf = new int[n];
+        int[] first = new int[n];
+        int[] past = new int[n];
+        int[] marked = new int[n];
+        boolean[] pending = new boolean[n];
+        int blockCount = 0;
+
+        // initial partition: accepting states first, then the rest
+        int acceptingCount = 0;
+        for (int s = 0; s < n; s++) {
+            if (accepting[s]) {
+                acceptingCount++;
+            }
+        }
+        int nextAccepting = 0;
+        int nextRejecting = acceptingCount;
+        for (int s = 0; s < n; s++) {
+            int at = accepting[s] ? nextAccepting++ : nextRejecting++;
+            elements[at] = s;
+            location[s] = at;
+        }
+        LinkedList<Integer> work = new LinkedList<Integer>();
+        if (acceptingCount > 0) {
+            first[blockCount] = 0;
+            past[blockCount] = acceptingCount;
+            blockCount++;
+        }
+        if (acceptingCount < n) {
+            first[blockCount] = acceptingCount;
+            past[blockCount] = n;
+            blockCount++;
+        }
+        for (int b = 0; b < blockCount; b++) {
+            for (int i = first[b]; i < past[b]; i++) {
+                blockOf[elements[i]] = b;
+            }
+        }
+        // either block alone is enough to start from; pick the smaller one
+        int smallest = blockCount == 1 || past[0] - first[0] <= past[1] - first[1] ? 0 : 1;
+        work.add(smallest);
+        pending[smallest] = true;
+
+        int[] touched = new int[n];
+        while (!work.isEmpty()) {
+            int splitter = work.removeFirst();
+            pending[splitter] = false;
+            int[] members = Arrays.copyOfRange(elements, first[splitter], past[splitter]);
+
+            for (int c = 0; c < classCount; c++) {
+                int[] offsets = inverseStart[c];
+                int[] sources = inverse[c];
+                int touchedCount = 0;
+
+                // move every predecessor to the front of its block
+                for (int target : members) {
+                    for (int i = offsets[target]; i < offsets[target + 1]; i++) {
+                        int s = sources[i];
+                        int b = blockOf[s];
+                        if (marked[b] == 0) {
+                            touched[touchedCount++] = b;
+                        }
+                        int swapAt = first[b] + marked[b];
+                        int other = elements[swapAt];
+                        elements[location[s]] = other;
+                        location[other] = location[s];
+                        elements[swapAt] = s;
+                        location[s] = swapAt;
+                        marked[b]++;
+                    }
+                }
+
+                // split every block that was only partly marked
+                for (int i = 0; i < touchedCount; i++) {
+                    int b = touched[i];
+                    int split = first[b] + marked[b];
+                    marked[b] = 0;
+                    if (split == past[b]) {
+                        continue;
+                    }
+                    int created = blockCount++;
+                    first[created] = first[b];
+                    past[created] = split;
+                    first[b] = split;
+                    for (int j = first[created]; j < past[created]; j++) {
+                        blockOf[elements[j]] = created;
+                    }
+                    if (pending[b] || past[created] - first[created] <= past[b] - first[b]) {
+                        work.add(created);
+                        pending[created] = true;
+                    } else {
+                        work.add(b);
+                        pending[b] = true;
+                    }
+                }
+            }
+        }
+
+        // number the blocks so that the dead state's block comes first
+        int[] renumber = new int[blockCount];
+        Arrays.fill(renumber, -1);
+        renumber[blockOf[0]] = Dfa.DEAD_STATE;
+        int nextId = 1;
+        for (int s = 0; s < n; s++) {
+            if (renumber[blockOf[s]] < 0) {
+                renumber[blockOf[s]] = nextId++;
+            }
+        }
+
+        int[] minimal = new int[blockCount * classCount];
+        long[] acceptingBits = new long[(blockCount + 63) / 64];
+        for (int b = 0; b < blockCount; b++) {
+            int representative = elements[first[b]];
+            int id = renumber[b];
+            for (int c = 0; c < classCount; c++) {
+                minimal[id * classCount + c] = renumber[blockOf[table[representative * classCount + c]]];
+            }
+            if (accepting[representative]) {
+                acceptingBits[id >>> 6] |= 1L << id;
+            }
+        }
+        return new Dfa(alphabet, minimal, acceptingBits, renumber[blockOf[start]], n);
+    }
+}
@@ -0,0 +1,67 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+/**
+ * Matches strings against a compiled {@link Dfa} with a class map lookup and a table
+ * lookup per character. Since the DFA is immutable a matcher can be shared between threads.
+ */
+public class DfaMatcher {
+    private final Dfa dfa;
+    private final AlphabetPartition alphabet;
+    private final int classCount;
+    private final int[] table;
+    private final long[] accepting;
+
+    /**
+     * Create a matcher for the given DFA
+     *
+     * @param dfa the dfa to run
+     */
+    public DfaMatcher(Dfa dfa) {
+        this.dfa = dfa;
+        this.alphabet = dfa.getAlphabet();
+        this.classCount = alphabet.getClassCount();
+        this.table = dfa.getTable();
+        this.accepting = dfa.getAccepting();
+    }
+
+    /**
+     * Create a matcher by compiling the given NFA
+     *
+     * @param nfa the nfa to compile
+     */
+    public DfaMatcher(Automaton nfa) {
+        this(DfaCompiler.compile(nfa));
+    }
+
+    public Dfa getDfa() {
+        return dfa;
+    }
+
+    /**
+     * Determines whether or not the given text is accepted by the DFA
+     *
+     * @param text the text to try matching
+     * @return true if the text is accepted, else false
+     */
+    public boolean matches(String text) {
+        return scan(text) < 0;
+    }
+
+    /**
+     * Runs the DFA over the given text
+     *
+     * @param text the text to try matching
+     * @return -1 if the text is accepted, the offset of the character that led to the dead
+     *         state, or the text's length if the whole text was read without accepting it
+     */
+    int scan(String text) {
+        int state = dfa.getStartState();
+        for (int i = 0; i < text.length(); i++) {
+            state = table[state * classCount + alphabet.classOf(text.charAt(i))];
+            if (state == Dfa.DEAD_STATE) {
+                return i;
+            }
+        }
+        return (accepting[state >>> 6] & (1L << state)) != 0 ? -1 : text.length();
+    }
+}
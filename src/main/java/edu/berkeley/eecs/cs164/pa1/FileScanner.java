@@ -0,0 +1,243 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Finds the lines of a file that match a pattern. The file is memory mapped and cut
+ * into line aligned chunks that are matched in parallel on a fork-join pool, each
+ * worker using its own {@link PikeVM}. Bytes are matched as ISO-8859-1 characters
+ * and never decoded into strings.
+ * <p>
+ * A line matches if the whole line, without its "\n" or "\r\n" terminator, is accepted.
+ */
+public class FileScanner {
+    /** Default number of bytes per chunk: 8 MB */
+    public static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+
+    private final CompiledNfa nfa;
+    private final int chunkSize;
+    private final ForkJoinPool pool;
+
+    /**
+     * Create a scanner that runs on the common fork-join pool
+     *
+     * @param nfa the pattern lines have to match
+     */
+    public FileScanner(CompiledNfa nfa) {
+        this(nfa, DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a scanner
+     *
+     * @param nfa       the pattern lines have to match
+     * @param chunkSize approximate number of bytes handed to a single task
+     * @param pool      the pool to run the tasks on
+     */
+    public FileScanner(CompiledNfa nfa, int chunkSize, ForkJoinPool pool) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.nfa = nfa;
+        this.chunkSize = chunkSize;
+        this.pool = pool;
+    }
+
+    /**
+     * Scans every line of the file
+     *
+     * @param file the file to scan
+     * @return the matching lines
+     * @throws IOException if the file cannot be read
+     */
+    public Result scan(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long[] bounds = chunkBounds(channel);
+            return pool.invoke(new ScanTask(channel, bounds, 0, bounds.length - 1));
+        } catch (UncheckedIOException e) {
+            // tasks cannot throw checked exceptions, so mapping failures come back wrapped
+            throw e.getCause();
+        } finally {
+            channel.close();
+        }
+    }
+
+    // Picks chunk boundaries roughly chunkSize apart, moving each one forward to just
+    // after the next newline so that no line is split between two chunks.
+    private long[] chunkBounds(FileChannel channel) throws IOException {
+        long size = channel.size();
+        List<Long> bounds = new ArrayList<Long>();
+        bounds.add(0L);
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long next = chunkSize;
+        while (next < size) {
+            long boundary = size;
+            long at = next;
+            search:
+            while (at < size) {
+                buffer.clear();
+                int read = channel.read(buffer, at);
+                if (read <= 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (buffer.get(i) == '\n') {
+                        boundary = at + i + 1;
+                        break search;
+                    }
+                }
+                at += read;
+            }
+            if (boundary < size) {
+                bounds.add(boundary);
+            }
+            next = boundary + chunkSize;
+        }
+        bounds.add(size);
+
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    // Scans the chunks [first, last) of the file, splitting the range in half until a
+    // single chunk is left.
+    private class ScanTask extends RecursiveTask<Result> {
+        private final FileChannel channel;
+        private final long[] bounds;
+        private final int first;
+        private final int last;
+
+        ScanTask(FileChannel channel, long[] bounds, int first, int last) {
+            this.channel = channel;
+            this.bounds = bounds;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected Result compute() {
+            if (last - first > 1) {
+                int middle = (first + last) >>> 1;
+                ScanTask left = new ScanTask(channel, bounds, first, middle);
+                left.fork();
+                Result right = new ScanTask(channel, bounds, middle, last).compute();
+                return left.join().append(right);
+            }
+            try {
+                return scanChunk(bounds[first], bounds[last]);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to map " + bounds[first] + ".." + bounds[last], e);
+            }
+        }
+
+        private Result scanChunk(long start, long end) throws IOException {
+            Result result = new Result();
+            if (start == end) {
+                return result;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            PikeVM vm = nfa.getThreadMatcher();
+            int length = buffer.limit();
+
+            int lineStart = 0;
+            while (lineStart < length) {
+                vm.reset();
+                boolean alive = true;
+                boolean pendingReturn = false;
+                int i = lineStart;
+                for (; i < length; i++) {
+                    byte b = buffer.get(i);
+                    if (b == '\n') {
+                        break;
+                    }
+                    if (!alive) {
+                        continue;
+                    }
+                    // a '\r' only counts as text if it isn't the first half of "\r\n"
+                    if (pendingReturn) {
+                        alive = vm.step('\r');
+                        pendingReturn = false;
+                        if (!alive) {
+                            continue;
+                        }
+                    }
+                    if (b == '\r') {
+                        pendingReturn = true;
+                    } else {
+                        alive = vm.step((char) (b & 0xff));
+                    }
+                }
+                if (pendingReturn && i == length) {
+                    alive = vm.step('\r');
+                }
+
+                result.lines++;
+                if (alive && vm.isAccepting()) {
+                    result.addMatch(start + lineStart);
+                }
+                lineStart = i + 1;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The outcome of a scan
+     */
+    public static class Result {
+        private long lines;
+        private long[] offsets = new long[16];
+        private int matches;
+
+        /**
+         * @return number of lines in the file
+         */
+        public long getLineCount() {
+            return lines;
+        }
+
+        /**
+         * @return number of matching lines
+         */
+        public int getMatchCount() {
+            return matches;
+        }
+
+        /**
+         * @return byte offsets of the first character of every matching line, in file order
+         */
+        public long[] getMatchOffsets() {
+            return Arrays.copyOf(offsets, matches);
+        }
+
+        private void addMatch(long offset) {
+            if (matches == offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            offsets[matches++] = offset;
+        }
+
+        private Result append(Result later) {
+            lines += later.lines;
+            for (int i = 0; i < later.matches; i++) {
+                addMatch(later.offsets[i]);
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The position (Glushkov) automaton of a pattern: an epsilon free NFA with one state
+ * per position, that is per occurrence of a character or class in the pattern, plus
+ * an initial state. Every transition into a position is labelled with that position's
+ * character, so the automaton is fully described by which positions can follow which
+ * and which positions can end a match.
+ * <p>
+ * Positions are read off the Thompson automaton {@link RegexParser} builds: a position
+ * is a distinct pair of label and target state among its character and class
+ * transitions. Position {@code q} follows position {@code p} when the source of
+ * {@code q}'s transition is in the epsilon closure of {@code p}'s target, and a
+ * position is last when its target's closure holds the out state. Position 0 is the
+ * initial state, standing for the start state's closure; it is never entered again and
+ * is last exactly when the pattern accepts the empty string.
+ * <p>
+ * Instances are immutable.
+ */
+public class GlushkovAutomaton {
+    private final char[] literals;
+    private final CharClass[] classes;
+    private final int[][] follow;
+    private final boolean[] last;
+
+    private GlushkovAutomaton(char[] literals, CharClass[] classes, int[][] follow, boolean[] last) {
+        this.literals = literals;
+        this.classes = classes;
+        this.follow = follow;
+        this.last = last;
+    }
+
+    /**
+     * Builds the position automaton of the given NFA
+     *
+     * @param nfa the nfa to convert
+     * @return the position automaton accepting the same language
+     */
+    public static GlushkovAutomaton of(Automaton nfa) {
+        // positions are numbered from 1 in order of first appearance; labels are either a
+        // Character or a CharClass
+        List<Object> labels = new ArrayList<Object>();
+        List<AutomatonState> targets = new ArrayList<AutomatonState>();
+        Map<Object, Map<AutomatonState, Integer>> positions = new HashMap<Object, Map<AutomatonState, Integer>>();
+        labels.add(null);
+        targets.add(nfa.getStart());
+
+        // the positions each state can move to directly, by consuming one character
+        Map<AutomatonState, Set<Integer>> moves = new HashMap<AutomatonState, Set<Integer>>();
+        for (AutomatonState state : nfa.getReachableStates()) {
+            Set<Integer> out = new LinkedHashSet<Integer>();
+            for (Map.Entry<Character, Set<AutomatonState>> entry : state.getAllTransitions()) {
+                if (entry.getKey() != null) {
+                    for (AutomatonState target : entry.getValue()) {
+                        out.add(position(entry.getKey(), target, labels, targets, positions));
+                    }
+                }
+            }
+            for (Map.Entry<CharClass, Set<AutomatonState>> entry : state.getClassTransitions()) {
+                for (AutomatonState target : entry.getValue()) {
+                    out.add(position(entry.getKey(), target, labels, targets, positions));
+                }
+            }
+            moves.put(state, out);
+        }
+
+        int n = labels.size();
+        char[] literals = new char[n];
+        CharClass[] classes = new CharClass[n];
+        int[][] follow = new int[n][];
+        boolean[] last = new boolean[n];
+        for (int p = 0; p < n; p++) {
+            if (labels.get(p) instanceof CharClass) {
+                classes[p] = (CharClass) labels.get(p);
+            } else if (labels.get(p) != null) {
+                literals[p] = (Character) labels.get(p);
+            }
+
+            HashSet<AutomatonState> entered = new HashSet<AutomatonState>();
+            entered.add(targets.get(p));
+            Set<Integer> next = new LinkedHashSet<Integer>();
+            for (AutomatonState state : NFASimulator.getEpsilonClosure(entered)) {
+                if (state == nfa.getOut()) {
+                    last[p] = true;
+                }
+                next.addAll(moves.get(state));
+            }
+            follow[p] = new int[next.size()];
+            int i = 0;
+            for (int q : next) {
+                follow[p][i++] = q;
+            }
+        }
+        return new GlushkovAutomaton(literals, classes, follow, last);
+    }
+
+    /**
+     * Counts the positions {@link #of(Automaton)} would create without building any
+     * follow sets, giving up once there are more than max of them
+     *
+     * @param nfa the nfa to look at
+     * @param max the most positions worth counting exactly
+     * @return the number of positions, or max + 1 if there are more than max
+     */
+    public static int countPositions(Automaton nfa, int max) {
+        Map<Object, Set<AutomatonState>> positions = new HashMap<Object, Set<AutomatonState>>();
+        int count = 0;
+        for (AutomatonState state : nfa.getReachableStates()) {
+            for (Map.Entry<Character, Set<AutomatonState>> entry : state.getAllTransitions()) {
+                if (entry.getKey() != null) {
+                    count += countNew(entry.getKey(), entry.getValue(), positions);
+                }
+            }
+            for (Map.Entry<CharClass, Set<AutomatonState>> entry : state.getClassTransitions()) {
+                count += countNew(entry.getKey(), entry.getValue(), positions);
+            }
+            if (count > max) {
+                return max + 1;
+            }
+        }
+        return count;
+    }
+
+    private static int countNew(Object label, Set<AutomatonState> targets, Map<Object, Set<AutomatonState>> positions) {
+        Set<AutomatonState> seen = positions.get(label);
+        if (seen == null) {
+            seen = new HashSet<AutomatonState>();
+            positions.put(label, seen);
+        }
+        int added = 0;
+        for (AutomatonState target : targets) {
+            if (seen.add(target)) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    private static int position(Object label, AutomatonState target, List<Object> labels,
+                                List<AutomatonState> targets, Map<Object, Map<AutomatonState, Integer>> positions) {
+        Map<AutomatonState, Integer> byTarget = positions.get(label);
+        if (byTarget == null) {
+            byTarget = new HashMap<AutomatonState, Integer>();
+            positions.put(label, byTarget);
+        }
+        Integer position = byTarget.get(target);
+        if (position == null) {
+            position = labels.size();
+            labels.add(label);
+            targets.add(target);
+            byTarget.put(target, position);
+        }
+        return position;
+    }
+
+    /**
+     * @return number of positions, not counting the initial state
+     */
+    public int getPositionCount() {
+        return follow.length - 1;
+    }
+
+    /**
+     * Checks whether a position is entered on the given character
+     *
+     * @param position a position between 1 and {@link #getPositionCount()}
+     * @param ch       the character to check
+     * @return true if the position's label holds the character
+     */
+    public boolean accepts(int position, char ch) {
+        if (position == 0) {
+            return false;
+        }
+        return classes[position] != null ? classes[position].contains(ch) : literals[position] == ch;
+    }
+
+    /**
+     * @param position a position, or 0 for the initial state
+     * @return the positions that can be entered next
+     */
+    public int[] getFollow(int position) {
+        return follow[position].clone();
+    }
+
+    /**
+     * @param position a position, or 0 for the initial state
+     * @return true if a match may end after the position
+     */
+    public boolean isLast(int position) {
+        return last[position];
+    }
+
+    // package-private views used by the matchers to avoid copying
+
+    int[] follow(int position) {
+        return follow[position];
+    }
+
+    @Override
+    public String toString() {
+        return "GlushkovAutomaton[positions=" + getPositionCount() + "]";
+    }
+}
@@ -0,0 +1,142 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts non-negative values in power of two buckets: bucket 0 holds 0 and bucket
+ * {@code k} holds the values from 2<sup>k-1</sup> up to 2<sup>k</sup> - 1. Every bucket
+ * is a {@link LongAdder}, so many threads can record at once without contending on a
+ * single counter. Instances are thread safe.
+ */
+public class Histogram {
+    /** Number of buckets; the last one holds everything from 2<sup>62</sup> up */
+    public static final int BUCKETS = 64;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder sum = new LongAdder();
+
+    public Histogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Counts a value
+     *
+     * @param value the value to count; negative values count as 0
+     */
+    public void record(long value) {
+        value = Math.max(value, 0);
+        buckets[bucketOf(value)].increment();
+        sum.add(value);
+    }
+
+    /**
+     * @param value a non-negative value
+     * @return the bucket the value is counted in
+     */
+    public static int bucketOf(long value) {
+        return 64 - Long.numberOfLeadingZeros(value);
+    }
+
+    /**
+     * @param bucket a bucket number
+     * @return the smallest value counted in the bucket
+     */
+    public static long lowerBound(int bucket) {
+        return bucket == 0 ? 0 : 1L << (bucket - 1);
+    }
+
+    /**
+     * Reads the counts. Values recorded while the snapshot is taken may or may not be
+     * included, and the sum may not agree exactly with the buckets.
+     *
+     * @return the counts so far
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return new Snapshot(counts, sum.sum());
+    }
+
+    /**
+     * The counts of a {@link Histogram} at one point in time. Instances are immutable.
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+
+        Snapshot(long[] counts, long sum) {
+            long total = 0;
+            for (long bucketCount : counts) {
+                total += bucketCount;
+            }
+            this.counts = counts;
+            this.count = total;
+            this.sum = sum;
+        }
+
+        /**
+         * @param bucket a bucket number, below {@link #BUCKETS}
+         * @return number of values counted in the bucket
+         */
+        public long getCount(int bucket) {
+            return counts[bucket];
+        }
+
+        /**
+         * @return number of values counted
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return sum of the values counted
+         */
+        public long getSum() {
+            return sum;
+        }
+
+        /**
+         * @return average of the values counted, or 0 if there are none
+         */
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * Estimates a quantile from the buckets
+         *
+         * @param quantile a fraction between 0 and 1
+         * @return the lower bound of the bucket holding the quantile, or 0 if nothing was counted
+         */
+        public long getQuantileLowerBound(double quantile) {
+            long rank = (long) Math.ceil(quantile * count);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank && seen > 0) {
+                    return lowerBound(i);
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder("{");
+            for (int i = 0; i < BUCKETS; i++) {
+                if (counts[i] != 0) {
+                    builder.append(builder.length() == 1 ? "" : ", ");
+                    builder.append(">=").append(lowerBound(i)).append(": ").append(counts[i]);
+                }
+            }
+            return builder.append("}").toString();
+        }
+    }
+}
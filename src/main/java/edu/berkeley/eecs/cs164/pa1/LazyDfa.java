@@ -0,0 +1,248 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A DFA that is built from an NFA on demand. Each DFA state stands for a set of NFA
+ * states (already epsilon closed), and its transitions are filled in the first time
+ * they are followed, so a warmed up cache matches with a class map lookup and one
+ * array lookup per character. Transitions are kept per {@link AlphabetPartition} class,
+ * so every state only has as many slots as the NFA has distinguishable characters.
+ * <p>
+ * The cache is bounded by an approximate byte budget. When adding a state would go over
+ * the budget every cached state is thrown away and construction starts over from the
+ * state currently being simulated.
+ * <p>
+ * Any number of NFA states can be marked as accepting, each with an id; every DFA
+ * state records which ids it accepts, which lets one DFA answer for a whole set of
+ * patterns at once (see {@link RegexSet}).
+ * <p>
+ * Instances are not thread safe.
+ */
+class LazyDfa {
+    /** Default cache budget: 4 MB */
+    static final long DEFAULT_MAX_CACHE_BYTES = 4L * 1024 * 1024;
+
+    // Rough per-object costs used to estimate the cache footprint; a state also pays
+    // for one slot per class
+    private static final int STATE_OVERHEAD_BYTES = 64 + 16;
+    private static final int SET_ENTRY_BYTES = 40;
+    private static final int[] NO_IDS = new int[0];
+
+    private final AutomatonState startState;
+    private final Map<AutomatonState, Integer> acceptIds;
+    private final long maxCacheBytes;
+    private final AlphabetPartition alphabet;
+    private final Map<Set<AutomatonState>, State> cache = new HashMap<Set<AutomatonState>, State>();
+    private final State dead;
+    private long cacheBytes;
+    private State start;
+    private int flushCount;
+    private long missCount;
+    private long closureIterations;
+    private int lastRejectOffset = -1;
+
+    /**
+     * Create a lazy DFA for the given NFA
+     *
+     * @param nfa           the nfa to determinize
+     * @param maxCacheBytes approximate number of bytes the cached states may use
+     */
+    LazyDfa(Automaton nfa, long maxCacheBytes) {
+        this(nfa.getStart(), Collections.singletonMap(nfa.getOut(), 0), maxCacheBytes);
+    }
+
+    /**
+     * Create a lazy DFA for an NFA with several accepting states
+     *
+     * @param startState    the start state of the nfa
+     * @param acceptIds     the accepting states of the nfa, each with the id to report for it
+     * @param maxCacheBytes approximate number of bytes the cached states may use
+     */
+    LazyDfa(AutomatonState startState, Map<AutomatonState, Integer> acceptIds, long maxCacheBytes) {
+        if (maxCacheBytes <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxCacheBytes);
+        }
+        this.startState = startState;
+        this.acceptIds = acceptIds;
+        this.maxCacheBytes = maxCacheBytes;
+        this.alphabet = AlphabetPartition.of(startState);
+        this.dead = new State(new HashSet<AutomatonState>(), NO_IDS, alphabet.getClassCount());
+    }
+
+    /**
+     * Determines whether or not the given text is accepted by the NFA
+     *
+     * @param text the text to try matching
+     * @return true if the text is accepted, else false
+     */
+    boolean matches(String text) {
+        return run(text, Long.MAX_VALUE).acceptedIds.length > 0;
+    }
+
+    /**
+     * Determines whether or not the given text is accepted, within a budget of steps.
+     * Following a cached transition is one step; computing a missing one takes a step
+     * for every NFA state it moves, and the budget is checked whenever that happens.
+     *
+     * @param text     the text to try matching
+     * @param maxSteps most steps the match may take
+     * @return true if the text is accepted, else false
+     * @throws ResourceLimitException if computing a transition takes the match past maxSteps
+     */
+    boolean matches(String text, long maxSteps) {
+        return run(text, maxSteps).acceptedIds.length > 0;
+    }
+
+    /**
+     * Gets the ids of all accepting states the nfa can be in after reading the text
+     *
+     * @param text the text to try matching
+     * @return the ids in ascending order; empty if the text is not accepted
+     */
+    int[] matchingIds(String text) {
+        return run(text, Long.MAX_VALUE).acceptedIds;
+    }
+
+    // Returns the DFA state reached after the whole text, or the dead state
+    private State run(String text, long maxSteps) {
+        State current = getStart();
+        long missSteps = 0;
+        for (int i = 0; i < text.length(); i++) {
+            int cls = alphabet.classOf(text.charAt(i));
+            State next = current.next[cls];
+            if (next == null) {
+                // cached transitions are one step each, so only misses need checking
+                missSteps += current.nfaStates.size();
+                if (i + missSteps > maxSteps) {
+                    throw new ResourceLimitException("Match exceeded the limit of " + maxSteps + " steps.");
+                }
+                next = computeNext(current, cls);
+            }
+            if (next == dead) {
+                lastRejectOffset = i;
+                return dead;
+            }
+            current = next;
+        }
+        lastRejectOffset = -1;
+        return current;
+    }
+
+    /**
+     * @return number of DFA states currently in the cache
+     */
+    int getCachedStateCount() {
+        return cache.size();
+    }
+
+    /**
+     * @return number of times the cache has been flushed for going over budget
+     */
+    int getFlushCount() {
+        return flushCount;
+    }
+
+    /**
+     * @return number of transitions that were not cached and had to be computed
+     */
+    long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return number of states taken off the worklist computing epsilon closures
+     */
+    long getClosureIterations() {
+        return closureIterations;
+    }
+
+    /**
+     * @return offset of the character the last match died on, or -1 if it read the whole text
+     */
+    int getLastRejectOffset() {
+        return lastRejectOffset;
+    }
+
+    private State getStart() {
+        if (start == null) {
+            HashSet<AutomatonState> initial = new HashSet<AutomatonState>();
+            initial.add(startState);
+            HashSet<AutomatonState> closure = NFASimulator.getEpsilonClosure(initial);
+            closureIterations += closure.size();
+            start = intern(closure);
+        }
+        return start;
+    }
+
+    // Follows a class out of the given state, creating the target DFA state if it is new.
+    // Any character of the class leads to the same place, so its smallest one is used.
+    private State computeNext(State from, int cls) {
+        missCount++;
+        HashSet<AutomatonState> moved = NFASimulator.getCharacterEnclosure(from.nfaStates,
+                alphabet.getRepresentative(cls));
+        State next = dead;
+        if (!moved.isEmpty()) {
+            // every state of the closure goes through the worklist exactly once
+            HashSet<AutomatonState> closure = NFASimulator.getEpsilonClosure(moved);
+            closureIterations += closure.size();
+            next = intern(closure);
+        }
+        from.next[cls] = next;
+        return next;
+    }
+
+    private State intern(HashSet<AutomatonState> nfaStates) {
+        State state = cache.get(nfaStates);
+        if (state != null) {
+            return state;
+        }
+
+        int[] ids = new int[Math.min(acceptIds.size(), nfaStates.size())];
+        int idCount = 0;
+        for (AutomatonState nfaState : nfaStates) {
+            Integer id = acceptIds.get(nfaState);
+            if (id != null) {
+                ids[idCount++] = id;
+            }
+        }
+        ids = idCount == 0 ? NO_IDS : Arrays.copyOf(ids, idCount);
+        Arrays.sort(ids);
+
+        long cost = STATE_OVERHEAD_BYTES + 8L * alphabet.getClassCount() + (long) SET_ENTRY_BYTES * nfaStates.size() + 4L * idCount;
+        if (cacheBytes + cost > maxCacheBytes && !cache.isEmpty()) {
+            flush();
+        }
+
+        state = new State(nfaStates, ids, alphabet.getClassCount());
+        cache.put(nfaStates, state);
+        cacheBytes += cost;
+        return state;
+    }
+
+    // Drops every cached state. States already handed out stay usable, but since nothing
+    // in the cache points at them any more they are garbage once the caller moves on.
+    private void flush() {
+        cache.clear();
+        cacheBytes = 0;
+        start = null;
+        flushCount++;
+    }
+
+    private static final class State {
+        final HashSet<AutomatonState> nfaStates;
+        final int[] acceptedIds;
+        final State[] next;
+
+        State(HashSet<AutomatonState> nfaStates, int[] acceptedIds, int classCount) {
+            this.nfaStates = nfaStates;
+            this.acceptedIds = acceptedIds;
+            this.next = new State[classCount];
+        }
+    }
+}
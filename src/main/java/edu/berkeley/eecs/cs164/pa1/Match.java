@@ -0,0 +1,128 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.util.Arrays;
+
+/**
+ * The location of a match inside a larger text: the matched characters are
+ * {@code text.substring(getStart(), getEnd())}. A match found by a
+ * {@link CaptureMatcher} also knows where each capture group matched; group 0 is the
+ * whole match, and a group that took no part in the match starts and ends at -1.
+ */
+public class Match {
+    private static final int[] NO_GROUPS = new int[0];
+
+    private final int start;
+    private final int end;
+    // start and end of groups 1, 2, ... in turn
+    private final int[] groups;
+
+    public Match(int start, int end) {
+        this(start, end, NO_GROUPS);
+    }
+
+    /**
+     * Create a match with capture groups
+     *
+     * @param start  offset of the first matched character
+     * @param end    offset just past the last matched character
+     * @param groups start and end offsets of groups 1, 2, ... in turn, -1 for a group that
+     *               took no part in the match
+     */
+    public Match(int start, int end, int[] groups) {
+        if (groups.length % 2 != 0) {
+            throw new IllegalArgumentException("Group offsets must come in pairs");
+        }
+        this.start = start;
+        this.end = end;
+        this.groups = groups.length == 0 ? NO_GROUPS : groups.clone();
+    }
+
+    /**
+     * @return offset of the first matched character
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * @return offset just past the last matched character
+     */
+    public int getEnd() {
+        return end;
+    }
+
+    /**
+     * @return number of capture groups, not counting group 0
+     */
+    public int getGroupCount() {
+        return groups.length / 2;
+    }
+
+    /**
+     * @param group a group number from 0 to {@link #getGroupCount()}
+     * @return offset of the group's first character, or -1 if it took no part in the match
+     * @throws IndexOutOfBoundsException if there is no such group
+     */
+    public int getStart(int group) {
+        return group == 0 ? start : groups[2 * checkGroup(group) - 2];
+    }
+
+    /**
+     * @param group a group number from 0 to {@link #getGroupCount()}
+     * @return offset just past the group's last character, or -1 if it took no part in the match
+     * @throws IndexOutOfBoundsException if there is no such group
+     */
+    public int getEnd(int group) {
+        return group == 0 ? end : groups[2 * checkGroup(group) - 1];
+    }
+
+    /**
+     * Extracts what a group matched
+     *
+     * @param text  the text the match was found in
+     * @param group a group number from 0 to {@link #getGroupCount()}
+     * @return the characters the group matched, or null if it took no part in the match
+     * @throws IndexOutOfBoundsException if there is no such group
+     */
+    public String getGroup(CharSequence text, int group) {
+        int groupStart = getStart(group);
+        return groupStart < 0 ? null : text.subSequence(groupStart, getEnd(group)).toString();
+    }
+
+    private int checkGroup(int group) {
+        if (group < 0 || group > getGroupCount()) {
+            throw new IndexOutOfBoundsException("No group " + group);
+        }
+        return group;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        Match that = (Match) o;
+
+        return start == that.start && end == that.end && Arrays.equals(groups, that.groups);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * start + end) + Arrays.hashCode(groups);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("[").append(start).append(", ").append(end).append(")");
+        for (int group = 1; group <= getGroupCount(); group++) {
+            builder.append(" ").append(group).append("=");
+            if (getStart(group) < 0) {
+                builder.append("unset");
+            } else {
+                builder.append("[").append(getStart(group)).append(", ").append(getEnd(group)).append(")");
+            }
+        }
+        return builder.toString();
+    }
+}
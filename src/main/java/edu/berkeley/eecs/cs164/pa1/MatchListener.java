@@ -0,0 +1,41 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+/**
+ * Receives a trace of an {@link NFASimulator} run. Listeners are only invoked when one
+ * has been registered with {@link NFASimulator#setListener(MatchListener)}, so matching
+ * without a listener pays nothing for tracing.
+ */
+public interface MatchListener {
+    /**
+     * Called once the start state has been epsilon closed, before any input is read
+     *
+     * @param text        the text being matched
+     * @param closureSize number of states in the epsilon closure of the start state
+     */
+    void matchStarted(String text, int closureSize);
+
+    /**
+     * Called after the character at the given offset has been consumed
+     *
+     * @param offset         offset of the character that was consumed
+     * @param reachableSize  number of states reached directly on the character
+     * @param closureSize    number of states after epsilon closing those
+     */
+    void stepped(int offset, int reachableSize, int closureSize);
+
+    /**
+     * Called when no state can consume the character at the given offset, just before
+     * the match gives up
+     *
+     * @param offset offset of the character that could not be consumed
+     */
+    void rejected(int offset);
+
+    /**
+     * Called when the match is decided
+     *
+     * @param accepted whether the text was accepted
+     * @param steps    number of characters consumed
+     */
+    void matchFinished(boolean accepted, int steps);
+}
@@ -0,0 +1,222 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts what an {@link NFASimulator} spends its time on, for one pattern. Register an
+ * instance with {@link NFASimulator#setMetrics(MatchMetrics)} and read it with
+ * {@link #snapshot()} from whatever scrapes your monitoring.
+ * <p>
+ * A simulator adds to the counters once per match, from totals it keeps in local
+ * variables while matching, and all counters are {@link LongAdder}s, so recording
+ * costs a handful of uncontended adds per match even when many threads share one
+ * instance. A simulator without metrics does no extra work beyond a null check.
+ * <p>
+ * Every mode counts matches, accepted texts and texts the {@link Prefilter} rejected.
+ * Every mode also counts the characters it scanned and the offsets texts were
+ * rejected at; active states per step come only from the NFA mode, and cache hits
+ * only from the lazy DFA.
+ * Epsilon-closure iterations count the states taken off the worklist while computing
+ * closures that were not cached yet, so they drop to nothing once a pattern is warm.
+ * <p>
+ * Instances are thread safe.
+ */
+public class MatchMetrics {
+    private final LongAdder matches = new LongAdder();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder prefilterRejects = new LongAdder();
+    private final LongAdder charsScanned = new LongAdder();
+    private final LongAdder steps = new LongAdder();
+    private final LongAdder activeStates = new LongAdder();
+    private final LongAdder closureIterations = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final Histogram rejectOffsets = new Histogram();
+    private final Histogram peakActiveStates = new Histogram();
+
+    /**
+     * Records a text the prefilter rejected before any engine ran
+     */
+    void recordPrefilterReject() {
+        matches.increment();
+        prefilterRejects.increment();
+    }
+
+    /**
+     * Records a match by an engine that reports nothing but its result
+     *
+     * @param wasAccepted whether the text was accepted
+     */
+    void recordMatch(boolean wasAccepted) {
+        matches.increment();
+        if (wasAccepted) {
+            accepted.increment();
+        }
+    }
+
+    /**
+     * Records a match that read the text character by character
+     *
+     * @param wasAccepted  whether the text was accepted
+     * @param scanned      number of characters looked at
+     * @param rejectOffset offset of the character no state could consume, or -1
+     */
+    void recordScan(boolean wasAccepted, int scanned, int rejectOffset) {
+        recordMatch(wasAccepted);
+        charsScanned.add(scanned);
+        if (rejectOffset >= 0) {
+            rejectOffsets.record(rejectOffset);
+        }
+    }
+
+    /**
+     * Records the state sets of a match in the NFA mode
+     *
+     * @param stepCount   number of characters consumed
+     * @param activeTotal sum over those steps of the number of states after the step
+     * @param peak        largest state set of the match, the start closure included
+     */
+    void recordActiveStates(int stepCount, long activeTotal, int peak) {
+        steps.add(stepCount);
+        activeStates.add(activeTotal);
+        peakActiveStates.record(peak);
+    }
+
+    void recordClosureIterations(long iterations) {
+        closureIterations.add(iterations);
+    }
+
+    void recordCacheLookups(long hits, long misses) {
+        cacheHits.add(hits);
+        cacheMisses.add(misses);
+    }
+
+    /**
+     * Reads every counter. Matches finishing while the snapshot is taken may be
+     * partly included.
+     *
+     * @return the counts so far
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * The counts of a {@link MatchMetrics} at one point in time. Instances are immutable.
+     */
+    public static class Snapshot {
+        private final long matchCount;
+        private final long acceptedCount;
+        private final long prefilterRejectCount;
+        private final long charsScanned;
+        private final long stepCount;
+        private final long activeStates;
+        private final long closureIterations;
+        private final long cacheHits;
+        private final long cacheMisses;
+        private final Histogram.Snapshot rejectOffsets;
+        private final Histogram.Snapshot peakActiveStates;
+
+        private Snapshot(MatchMetrics metrics) {
+            matchCount = metrics.matches.sum();
+            acceptedCount = metrics.accepted.sum();
+            prefilterRejectCount = metrics.prefilterRejects.sum();
+            charsScanned = metrics.charsScanned.sum();
+            stepCount = metrics.steps.sum();
+            activeStates = metrics.activeStates.sum();
+            closureIterations = metrics.closureIterations.sum();
+            cacheHits = metrics.cacheHits.sum();
+            cacheMisses = metrics.cacheMisses.sum();
+            rejectOffsets = metrics.rejectOffsets.snapshot();
+            peakActiveStates = metrics.peakActiveStates.snapshot();
+        }
+
+        /**
+         * @return number of texts matched
+         */
+        public long getMatchCount() {
+            return matchCount;
+        }
+
+        /**
+         * @return number of texts accepted
+         */
+        public long getAcceptedCount() {
+            return acceptedCount;
+        }
+
+        /**
+         * @return number of texts the prefilter rejected without running an engine
+         */
+        public long getPrefilterRejectCount() {
+            return prefilterRejectCount;
+        }
+
+        /**
+         * @return number of characters the engines looked at
+         */
+        public long getCharsScanned() {
+            return charsScanned;
+        }
+
+        /**
+         * @return average number of NFA states after a step, or 0 if no step was counted
+         */
+        public double getAverageActiveStates() {
+            return stepCount == 0 ? 0 : (double) activeStates / stepCount;
+        }
+
+        /**
+         * @return states taken off the worklist while computing epsilon closures
+         */
+        public long getClosureIterations() {
+            return closureIterations;
+        }
+
+        /**
+         * @return lazy DFA transitions that were already cached
+         */
+        public long getCacheHits() {
+            return cacheHits;
+        }
+
+        /**
+         * @return lazy DFA transitions that had to be computed
+         */
+        public long getCacheMisses() {
+            return cacheMisses;
+        }
+
+        /**
+         * @return fraction of lazy DFA transitions that were cached, or 0 if there were none
+         */
+        public double getCacheHitRate() {
+            long lookups = cacheHits + cacheMisses;
+            return lookups == 0 ? 0 : (double) cacheHits / lookups;
+        }
+
+        /**
+         * @return offsets of the characters texts were rejected at
+         */
+        public Histogram.Snapshot getRejectOffsets() {
+            return rejectOffsets;
+        }
+
+        /**
+         * @return the largest NFA state set of each match
+         */
+        public Histogram.Snapshot getPeakActiveStates() {
+            return peakActiveStates;
+        }
+
+        @Override
+        public String toString() {
+            return "MatchMetrics[matches=" + matchCount + ", accepted=" + acceptedCount
+                    + ", prefilterRejects=" + prefilterRejectCount + ", charsScanned=" + charsScanned
+                    + ", averageActiveStates=" + String.format("%.2f", getAverageActiveStates())
+                    + ", closureIterations=" + closureIterations
+                    + ", cacheHitRate=" + String.format("%.4f", getCacheHitRate())
+                    + ", rejectOffsets=" + rejectOffsets + "]";
+        }
+    }
+}
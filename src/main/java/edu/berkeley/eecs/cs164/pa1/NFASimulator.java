@@ -1,17 +1,64 @@
 package edu.berkeley.eecs.cs164.pa1;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class simulates a non-deterministic finite automaton over ASCII strings.
  */
 public class NFASimulator {
+    // Most states the per-state closure cache may hold in total
+    private static final int MAX_CACHED_CLOSURE_STATES = 1 << 20;
+
+    /**
+     * The execution strategies a simulator can use. All of them accept exactly the same language.
+     */
+    public enum Mode {
+        /** Step the set of NFA states directly, recomputing closures for every character */
+        NFA,
+        /** Build DFA states lazily as they are first visited and cache their transitions */
+        LAZY_DFA,
+        /**
+         * Compile a minimal DFA up front with {@link DfaCompiler}, falling back to
+         * {@link #NFA} if the DFA would have too many states
+         */
+        DFA,
+        /**
+         * Simulate the position automaton with one bit per position using a
+         * {@link BitParallelMatcher}; the nfa must have at most
+         * {@link BitParallelMatcher#MAX_POSITIONS} positions
+         */
+        BIT_PARALLEL,
+        /** Use {@link #BIT_PARALLEL} if the nfa fits, {@link #LAZY_DFA} otherwise */
+        AUTO
+    }
+
     private final Automaton nfa;
+    private final Mode mode;
+    private final LazyDfa lazyDfa;
+    private final DfaMatcher dfaMatcher;
+    private final BitParallelMatcher bitParallelMatcher;
+    // found on first use, so building a simulator does not pay for the analysis
+    private volatile Prefilter prefilter;
+    // epsilon closures of the states the simulation has entered so far, in no particular order
+    private final ConcurrentHashMap<AutomatonState, AutomatonState[]> closures =
+            new ConcurrentHashMap<AutomatonState, AutomatonState[]>();
+    private final AtomicInteger cachedClosureStates = new AtomicInteger();
+    // built the first time groups are asked for
+    private volatile CompiledNfa captureNfa;
+    private MatchListener listener;
+    private MatchMetrics metrics;
+    private int maxTextLength = Integer.MAX_VALUE;
+    private long maxSteps = Long.MAX_VALUE;
 
     /**
      * Create a new simulator from a given NFA structure
@@ -19,7 +66,178 @@ public class NFASimulator {
      * @param nfa the nfa to simulate
      */
     public NFASimulator(Automaton nfa) {
+        this(nfa, Mode.NFA);
+    }
+
+    /**
+     * Create a new simulator using the given execution strategy
+     *
+     * @param nfa  the nfa to simulate
+     * @param mode how the nfa should be executed
+     */
+    public NFASimulator(Automaton nfa, Mode mode) {
+        this(nfa, mode, LazyDfa.DEFAULT_MAX_CACHE_BYTES);
+    }
+
+    /**
+     * Create a new simulator using the given execution strategy and DFA cache size
+     *
+     * @param nfa           the nfa to simulate
+     * @param mode          how the nfa should be executed
+     * @param maxCacheBytes approximate memory the lazy DFA may use before its cache is flushed
+     *                      (ignored unless a lazy DFA is used)
+     * @throws IllegalArgumentException if mode is {@link Mode#BIT_PARALLEL} and the nfa has
+     *                                  too many positions
+     */
+    public NFASimulator(Automaton nfa, Mode mode, long maxCacheBytes) {
+        this(nfa, mode, maxCacheBytes, DfaCompiler.DEFAULT_MAX_STATES);
+    }
+
+    /**
+     * Create a new simulator using the given execution strategy, DFA cache size and
+     * limit on the size of a DFA built up front. If mode is {@link Mode#DFA} and the
+     * subset construction needs more than maxDfaStates states, or more than
+     * {@link DfaCompiler#DEFAULT_MAX_SUBSET_ENTRIES} subset entries, the simulator steps
+     * the nfa directly instead and {@link #getMode()} reports {@link Mode#NFA}.
+     *
+     * @param nfa           the nfa to simulate
+     * @param mode          how the nfa should be executed
+     * @param maxCacheBytes approximate memory the lazy DFA may use before its cache is flushed
+     *                      (ignored unless a lazy DFA is used)
+     * @param maxDfaStates  most states a DFA compiled up front may need (ignored unless mode
+     *                      is {@link Mode#DFA})
+     * @throws IllegalArgumentException if mode is {@link Mode#BIT_PARALLEL} and the nfa has
+     *                                  too many positions
+     */
+    public NFASimulator(Automaton nfa, Mode mode, long maxCacheBytes, int maxDfaStates) {
         this.nfa = nfa;
+        // positions are counted before any follow sets are built
+        if (mode == Mode.AUTO) {
+            mode = BitParallelMatcher.fits(nfa) ? Mode.BIT_PARALLEL : Mode.LAZY_DFA;
+        } else if (mode == Mode.BIT_PARALLEL && !BitParallelMatcher.fits(nfa)) {
+            throw new IllegalArgumentException("Too many positions for a bit-parallel matcher: more than "
+                    + BitParallelMatcher.MAX_POSITIONS);
+        }
+        DfaMatcher dfaMatcher = null;
+        if (mode == Mode.DFA) {
+            try {
+                dfaMatcher = new DfaMatcher(DfaCompiler.compile(nfa, maxDfaStates));
+            } catch (ResourceLimitException e) {
+                // stepping the state sets needs no memory beyond the nfa itself
+                mode = Mode.NFA;
+            }
+        }
+        this.mode = mode;
+        this.lazyDfa = mode == Mode.LAZY_DFA ? new LazyDfa(nfa, maxCacheBytes) : null;
+        this.dfaMatcher = dfaMatcher;
+        this.bitParallelMatcher = mode == Mode.BIT_PARALLEL
+                ? new BitParallelMatcher(GlushkovAutomaton.of(nfa), AlphabetPartition.of(nfa)) : null;
+    }
+
+    /**
+     * @return the strategy in use; {@link Mode#AUTO} is resolved to the one it picked
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return the literals every accepted text has to contain, which are checked before
+     * the automaton runs; they are found the first time they are needed
+     */
+    public Prefilter getPrefilter() {
+        Prefilter result = prefilter;
+        if (result == null) {
+            // threads racing here may each analyze the nfa; the results are equal
+            result = Prefilter.of(nfa);
+            prefilter = result;
+        }
+        return result;
+    }
+
+    /**
+     * Registers a listener that is told about every step of the simulation. Only the
+     * {@link Mode#NFA} strategy reports events, and while a listener is set every text
+     * is simulated, even one the {@link Prefilter} would have thrown out. Pass null to
+     * turn tracing back off, in which case matching does no extra work at all.
+     *
+     * @param listener the listener to notify, or null
+     */
+    public void setListener(MatchListener listener) {
+        this.listener = listener;
+    }
+
+    public MatchListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Starts recording what {@link #matches(String)} does into the given metrics, which
+     * may be shared with other simulators or threads. Pass null to stop recording.
+     *
+     * @param metrics the metrics to add to, or null
+     */
+    public void setMetrics(MatchMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public MatchMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Bounds the work a single call may do, so a hostile text or pattern cannot tie up a
+     * thread. Every matching and searching method refuses texts longer than maxTextLength.
+     * A step is one NFA state followed over one character; {@link #find(String)},
+     * {@link #findLongest(String)}, {@link #matchGroups(String)}, {@link #findGroups(String)}
+     * and {@link #matches(String)} in the {@link Mode#NFA} mode count their steps and give
+     * up once there are more than maxSteps. In the {@link Mode#LAZY_DFA} mode a cached
+     * transition counts as one step and the budget is checked whenever a transition has to
+     * be computed. The {@link Mode#DFA} and {@link Mode#BIT_PARALLEL} modes do constant work
+     * per character, so the length limit bounds them.
+     *
+     * @param maxTextLength longest text accepted, or {@link Integer#MAX_VALUE} for no limit
+     * @param maxSteps      most steps per call, or {@link Long#MAX_VALUE} for no limit
+     */
+    public void setBudget(int maxTextLength, long maxSteps) {
+        this.maxTextLength = maxTextLength;
+        this.maxSteps = maxSteps;
+    }
+
+    public int getMaxTextLength() {
+        return maxTextLength;
+    }
+
+    public long getMaxSteps() {
+        return maxSteps;
+    }
+
+    private void checkLength(String text) {
+        if (text.length() > maxTextLength) {
+            throw new ResourceLimitException("Text of length " + text.length() + " exceeds the limit of "
+                    + maxTextLength + " characters.");
+        }
+    }
+
+    private static void checkSteps(long steps, long maxSteps) {
+        if (steps > maxSteps) {
+            throw new ResourceLimitException("Match exceeded the limit of " + maxSteps + " steps.");
+        }
+    }
+
+    /**
+     * Records the result of a DFA or bit-parallel scan
+     *
+     * @param text the text that was scanned
+     * @param scan what the matcher's scan returned: -1 if accepted, else the reject offset
+     *             or the text's length
+     * @return true if the text was accepted, else false
+     */
+    private boolean recordScan(String text, int scan) {
+        boolean accepted = scan < 0;
+        int rejectOffset = scan < text.length() ? scan : -1;
+        metrics.recordScan(accepted, rejectOffset < 0 ? text.length() : rejectOffset + 1, rejectOffset);
+        return accepted;
     }
 
     /**
@@ -27,8 +245,50 @@ public class NFASimulator {
      *
      * @param text the text to try matching
      * @return true if the text is accepted by the NFA, else false
+     * @throws ResourceLimitException if the text or the simulation exceeds the budget
+     *                                given to {@link #setBudget(int, long)}
      */
     public boolean matches(String text) {
+        checkLength(text);
+
+        // read the metrics once, like the listener below, so they cost a null check when off
+        MatchMetrics metrics = this.metrics;
+
+        // texts missing a required literal are rejected without running anything
+        if (listener == null && !getPrefilter().mayMatch(text)) {
+            if (metrics != null) {
+                metrics.recordPrefilterReject();
+            }
+            return false;
+        }
+        if (lazyDfa != null) {
+            if (metrics == null) {
+                return lazyDfa.matches(text, maxSteps);
+            }
+            long misses = lazyDfa.getMissCount();
+            long closureIterations = lazyDfa.getClosureIterations();
+            boolean accepted = lazyDfa.matches(text, maxSteps);
+            int rejectOffset = lazyDfa.getLastRejectOffset();
+            int scanned = rejectOffset < 0 ? text.length() : rejectOffset + 1;
+            misses = lazyDfa.getMissCount() - misses;
+            metrics.recordScan(accepted, scanned, rejectOffset);
+            metrics.recordCacheLookups(scanned - misses, misses);
+            metrics.recordClosureIterations(lazyDfa.getClosureIterations() - closureIterations);
+            return accepted;
+        }
+        if (dfaMatcher != null) {
+            if (metrics == null) {
+                return dfaMatcher.matches(text);
+            }
+            return recordScan(text, dfaMatcher.scan(text));
+        }
+        if (bitParallelMatcher != null) {
+            if (metrics == null) {
+                return bitParallelMatcher.matches(text);
+            }
+            return recordScan(text, bitParallelMatcher.scan(text));
+        }
+
         // this function will work by starting at a starting state, finding all
         // the states that can be reached by performing only epsilon transitions
         // and then finding all the states reachable with a transition with the current
@@ -51,13 +311,21 @@ public class NFASimulator {
         // that will be the only item in currentStates
         currentStates.add(startState);
 
-        System.out.print("Our set starts with " + Integer.toString(currentStates.size()) + " elements.\n");
-
         // before we start iteration over our input, we will want to find out what states you can
         // get to by simply following epsilon transitions
-        currentStates = getEpsilonClosure(currentStates);
+        currentStates = closeAll(currentStates, metrics);
+
+        // read the listener once so tracing costs a single null check per step when it is off
+        MatchListener listener = this.listener;
+        if (listener != null) {
+            listener.matchStarted(text, currentStates.size());
+        }
 
-        System.out.print("After preliminary epsilon enclosure, our set has " + Integer.toString(currentStates.size()) + " elements.\n");
+        // state set sizes are summed up locally and handed to the metrics once at the end
+        long activeTotal = 0;
+        int peakActive = currentStates.size();
+        long steps = 0;
+        long maxSteps = this.maxSteps;
 
         // we will iterate through the input
         while(i < text.length()) {
@@ -66,23 +334,38 @@ public class NFASimulator {
             // is going to be
             char currentCharacter = text.charAt(i);
 
+            steps += currentStates.size();
+            checkSteps(steps, maxSteps);
             reachableStates = getCharacterEnclosure(currentStates, currentCharacter);
 
             // if we could not reach any states given our current states, the we can conclude that
             // the input is not in the language defined by our NFA
             if (reachableStates.isEmpty()) {
-                System.out.print("At the " + Integer.toString(i + 1) + "th character out of " + Integer.toString(text.length()) + " in " + text + " we found that it is not in the language.\n");
+                if (listener != null) {
+                    listener.rejected(i);
+                    listener.matchFinished(false, i);
+                }
+                if (metrics != null) {
+                    metrics.recordScan(false, i + 1, i);
+                    metrics.recordActiveStates(i, activeTotal, peakActive);
+                }
                 return false;
             }
 
-            //System.out.print("Before in-loop epsilon enclosure our set had " + Integer.toString(reachableStates.size()) + " elements.\n");
             // if we could reach states from our transition, we will perform epsilon enclosure to
             // ensure that if the next character can transition us to new states, we will have access
             // to them in the next iteration
-            currentStates = getEpsilonClosure(reachableStates);
+            int reachableCount = reachableStates.size();
+            currentStates = closeAll(reachableStates, metrics);
+
+            if (listener != null) {
+                listener.stepped(i, reachableCount, currentStates.size());
+            }
+            if (metrics != null) {
+                activeTotal += currentStates.size();
+                peakActive = Math.max(peakActive, currentStates.size());
+            }
 
-            //System.out.print("After in-loop epsilon enclosure our set has " + Integer.toString(currentStates.size()) + " elements.\n");
-            
             // Once we have finished finding reachable states in our NFA, we will increment i for
             // the purposes of looking at the next character in the input
             i++;
@@ -92,69 +375,231 @@ public class NFASimulator {
         // once we have iterated through the whole input and found the states we reach at the end
         // of the cycles of ε* character transitions, we need to see if we could have reached the
         // out state while doing that.
-        if (currentStates.contains(outState)) {
-        	System.out.print("Reached end of input. Made to out state. Valid regex.\n");
-            return true;
+        boolean accepted = currentStates.contains(outState);
+        if (listener != null) {
+            listener.matchFinished(accepted, text.length());
         }
-        else {
-            System.out.print("Reached end of input. Couldn't reach out state.\n");
-            return false;
+        if (metrics != null) {
+            metrics.recordScan(accepted, text.length(), -1);
+            metrics.recordActiveStates(text.length(), activeTotal, peakActive);
         }
+        return accepted;
 
     }
 
-    // This function will return a set of all states that can be reached by taking 0 or more epsilon
-    // transitions from one of the states in our input 
-    private HashSet<AutomatonState> getEpsilonClosure(HashSet<AutomatonState> oldStates) {
+    /**
+     * Finds the first match of the NFA anywhere inside the text, in a single pass. The
+     * match returned is the one that ends earliest; among those, the one that starts
+     * leftmost. Scanning stops as soon as it is found.
+     * <p>
+     * Searching always simulates the NFA directly, whatever mode the simulator is in.
+     *
+     * @param text the text to search
+     * @return the match, or null if no substring of the text is accepted
+     * @throws ResourceLimitException if the text or the search exceeds the budget
+     */
+    public Match find(String text) {
+        return search(text, false);
+    }
+
+    /**
+     * Finds the leftmost-longest match of the NFA inside the text, in a single pass: of
+     * all matches the ones starting leftmost are preferred, and among those the longest.
+     *
+     * @param text the text to search
+     * @return the match, or null if no substring of the text is accepted
+     * @throws ResourceLimitException if the text or the search exceeds the budget
+     */
+    public Match findLongest(String text) {
+        return search(text, true);
+    }
+
+    /**
+     * Matches the whole text and reports where each capture group matched, using the
+     * calling thread's {@link CaptureMatcher}. If the text can be matched in more than one
+     * way, the groups are those of the way greedy quantifiers and earlier alternatives
+     * prefer.
+     *
+     * @param text the text to try matching
+     * @return the match and its groups, or null if the text is not accepted
+     * @throws ResourceLimitException if the text or the match exceeds the budget
+     */
+    public Match matchGroups(String text) {
+        checkLength(text);
+        if (!getPrefilter().mayMatch(text)) {
+            return null;
+        }
+        return getCaptureNfa().getThreadCaptureMatcher().match(text, maxSteps);
+    }
 
-        // create a new HashSet to contain all the states reachable from our initial state. Since any
-        // state can reach itself with 0 epsilon transitions, epsilonReachables will contain everything
-        // in oldStates.
-        HashSet<AutomatonState> epsilonReachables = new HashSet();
+    /**
+     * Finds the leftmost match inside the text and reports where each capture group
+     * matched; see {@link CaptureMatcher#find(CharSequence)}
+     *
+     * @param text the text to search
+     * @return the match and its groups, or null if no substring of the text is accepted
+     * @throws ResourceLimitException if the text or the search exceeds the budget
+     */
+    public Match findGroups(String text) {
+        checkLength(text);
+        String required = getPrefilter().getRequiredLiteral();
+        if (!required.isEmpty() && !text.contains(required)) {
+            return null;
+        }
+        return getCaptureNfa().getThreadCaptureMatcher().find(text, maxSteps);
+    }
 
-        // turns out you have to do this because simple assignment makes epsilon reachables reference the
-        // same object as oldStates
-        Iterator<AutomatonState> adder = oldStates.iterator();
-        while (adder.hasNext()){
-            epsilonReachables.add(adder.next());
+    private CompiledNfa getCaptureNfa() {
+        CompiledNfa compiled = captureNfa;
+        if (compiled == null) {
+            // threads racing here may each compile a copy; any of them will do
+            compiled = CompiledNfa.compile(nfa);
+            captureNfa = compiled;
         }
+        return compiled;
+    }
 
-        // set up a loop that will iterate until a break condition is met
-        while (true) {
+    // Rather than running matches on every substring, we run a single simulation where
+    // every state remembers the leftmost offset a path to it could have started at, and
+    // the start state's closure is seeded again at every offset until a match is found.
+    // Literals the pattern requires let it skip ahead: without the required literal
+    // nothing can match, and while no path is alive only offsets where the prefix occurs
+    // can start one.
+    private Match search(String text, boolean longest) {
+        checkLength(text);
+        AutomatonState startState = this.nfa.getStart();
+        AutomatonState outState = this.nfa.getOut();
+        Prefilter prefilter = getPrefilter();
+        String required = prefilter.getRequiredLiteral();
+        if (!required.isEmpty() && !text.contains(required)) {
+            return null;
+        }
 
-            // create an iterable that will loop through all the states in oldStates
-            Iterator<AutomatonState> checkStates = oldStates.iterator();
+        HashMap<AutomatonState, Integer> currentStates = new HashMap<AutomatonState, Integer>();
+        Match best = null;
+        long steps = 0;
+        long maxSteps = this.maxSteps;
+        for (int i = 0; ; i++) {
+            if (best == null && currentStates.isEmpty() && !prefilter.getPrefix().isEmpty()) {
+                i = prefilter.nextCandidate(text, i);
+                if (i < 0) {
+                    return null;
+                }
+            }
 
-            // cycle through the elements of checkStates
-            while (checkStates.hasNext()) {
+            // once something has matched, any match starting later would lose anyway
+            if (best == null) {
+                addWithClosure(currentStates, startState, i);
+            }
 
-                // pop the next element off the iterator to be processed
-                AutomatonState currentState = checkStates.next();
+            Integer matchStart = currentStates.get(outState);
+            if (matchStart != null && (best == null || matchStart <= best.getStart())) {
+                best = new Match(matchStart, i);
+                if (!longest) {
+                    return best;
+                }
+            }
 
-                // create an iterator of the current state's epsilon transitions to place individually
-                // into epsilonReachables
-                Iterator<AutomatonState> epsilonStates = currentState.getEpsilonTransitions().iterator();
+            if (best != null) {
+                // only paths that started no later than the best match can still improve it
+                Iterator<Integer> starts = currentStates.values().iterator();
+                while (starts.hasNext()) {
+                    if (starts.next() > best.getStart()) {
+                        starts.remove();
+                    }
+                }
+                if (currentStates.isEmpty()) {
+                    return best;
+                }
+            }
 
-                while (epsilonStates.hasNext()) {
+            if (i == text.length()) {
+                return best;
+            }
 
-                    // add the current epsilon reachable state to epsilonReachables
-                    epsilonReachables.add(epsilonStates.next());                    
+            char currentCharacter = text.charAt(i);
+            steps += currentStates.size();
+            checkSteps(steps, maxSteps);
+            HashMap<AutomatonState, Integer> reachableStates = new HashMap<AutomatonState, Integer>();
+            for (Map.Entry<AutomatonState, Integer> entry : currentStates.entrySet()) {
+                for (AutomatonState target : entry.getKey().getTransitions(currentCharacter)) {
+                    addWithClosure(reachableStates, target, entry.getValue());
                 }
+            }
+            currentStates = reachableStates;
+        }
+    }
 
+    // The epsilon closure of a set is the union of the closures of its members, each of which
+    // is only computed the first time the state is entered. A state that is already in the
+    // result needs no lookup at all: whatever put it there brought its whole closure along.
+    // Closures that have to be computed are counted into metrics, if there are any.
+    private HashSet<AutomatonState> closeAll(HashSet<AutomatonState> states, MatchMetrics metrics) {
+        HashSet<AutomatonState> closed = new HashSet<AutomatonState>();
+        for (AutomatonState state : states) {
+            if (closed.contains(state)) {
+                continue;
+            }
+            AutomatonState[] closure = closures.get(state);
+            if (closure == null) {
+                HashSet<AutomatonState> single = new HashSet<AutomatonState>();
+                single.add(state);
+                closure = getEpsilonClosure(single).toArray(new AutomatonState[0]);
+                if (metrics != null) {
+                    metrics.recordClosureIterations(closure.length);
+                }
+                // closures can add up to the square of the state count, so stop remembering
+                // them once they get that big
+                if (cachedClosureStates.get() < MAX_CACHED_CLOSURE_STATES
+                        && cachedClosureStates.addAndGet(closure.length) <= MAX_CACHED_CLOSURE_STATES) {
+                    closures.put(state, closure);
+                }
             }
+            Collections.addAll(closed, closure);
+        }
+        return closed;
+    }
 
-            // If after going through all the checkStates, we have not added any new states to epsilonReachables
-            // we have reached epsilon closure for the starting set of states
-            if (oldStates.size() == epsilonReachables.size()) {
-                break;
+    // Adds a state and everything epsilon reachable from it, tagged with the offset the
+    // path started at. A state already present keeps whichever start offset is leftmost.
+    private static void addWithClosure(HashMap<AutomatonState, Integer> states, AutomatonState state, int start) {
+        LinkedList<AutomatonState> worklist = new LinkedList<AutomatonState>();
+        Integer known = states.get(state);
+        if (known != null && known <= start) {
+            return;
+        }
+        states.put(state, start);
+        worklist.add(state);
+        while (!worklist.isEmpty()) {
+            for (AutomatonState target : worklist.removeFirst().getEpsilonTransitions()) {
+                known = states.get(target);
+                if (known == null || known > start) {
+                    states.put(target, start);
+                    worklist.add(target);
+                }
             }
+        }
+    }
 
-            // if we added some amount of new states during this iteration of the loop, we will set the
-            // two sets equal for the next iteration of the loop (which will break if it can't add any
-            // new states likw we did here)
-            Iterator<AutomatonState> setMatcher = epsilonReachables.iterator();
-            while (setMatcher.hasNext()){
-                oldStates.add(setMatcher.next());
+    // This function will return a set of all states that can be reached by taking 0 or more epsilon
+    // transitions from one of the states in our input. Every state is put on a worklist the first time
+    // it is seen and its epsilon transitions are followed exactly once, so the cost is linear in the
+    // size of the closure and cycles like the ones ((a*)*)* creates are harmless. oldStates is left
+    // untouched.
+    static HashSet<AutomatonState> getEpsilonClosure(HashSet<AutomatonState> oldStates) {
+
+        // Since any state can reach itself with 0 epsilon transitions, epsilonReachables starts out
+        // holding everything in oldStates, and all of them still have their transitions to follow
+        HashSet<AutomatonState> epsilonReachables = new HashSet<AutomatonState>(oldStates);
+        ArrayList<AutomatonState> worklist = new ArrayList<AutomatonState>(oldStates);
+
+        while (!worklist.isEmpty()) {
+            AutomatonState currentState = worklist.remove(worklist.size() - 1);
+            for (AutomatonState target : currentState.getEpsilonTransitions()) {
+                // a state we have already seen has had (or will have) its transitions followed
+                if (epsilonReachables.add(target)) {
+                    worklist.add(target);
+                }
             }
         }
 
@@ -164,7 +609,7 @@ public class NFASimulator {
 
     // this function will take a set of states and return all states reachable via by follow a tranisiton
     // from a given character 
-    private HashSet<AutomatonState> getCharacterEnclosure(HashSet<AutomatonState> startingStates, char character) {
+    static HashSet<AutomatonState> getCharacterEnclosure(HashSet<AutomatonState> startingStates, char character) {
 
         // We will make a container for the states the can be reached via character transition. (Note that
         // unlike with epsilon closure, a state cannot necessarily reach itself via a character transition)
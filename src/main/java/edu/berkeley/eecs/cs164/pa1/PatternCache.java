@@ -0,0 +1,255 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * A thread safe, least recently used cache of compiled patterns keyed by pattern
+ * string. The cache is bounded both by number of entries and by the estimated number
+ * of bytes the compiled forms use; whichever limit is hit first evicts the least
+ * recently used entries. Every entry holds the parsed {@link Automaton}, shrunk by
+ * {@link AutomatonOptimizer} so every matcher built from it walks a smaller graph, its
+ * {@link CompiledNfa} and its {@link Prefilter}; the {@link Dfa} is only built the first time it is asked for and
+ * counts against the byte budget from then on. The optimizer drops capture groups, so
+ * for a pattern with groups the compiled NFA is built from the unoptimized automaton
+ * instead, and reports the groups.
+ * <p>
+ * Hits, misses and evictions are counted so the cache can be sized from production
+ * numbers.
+ */
+public class PatternCache {
+    // Rough costs used to estimate how much memory an automaton takes up
+    private static final int STATE_BYTES = 112;
+    private static final int EDGE_BYTES = 64;
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final int maxDfaStates;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Create a cache
+     *
+     * @param maxEntries maximum number of patterns to keep
+     * @param maxBytes   maximum estimated number of bytes the cached patterns may use
+     */
+    public PatternCache(int maxEntries, long maxBytes) {
+        this(maxEntries, maxBytes, DfaCompiler.DEFAULT_MAX_STATES);
+    }
+
+    /**
+     * Create a cache
+     *
+     * @param maxEntries   maximum number of patterns to keep
+     * @param maxBytes     maximum estimated number of bytes the cached patterns may use
+     * @param maxDfaStates maximum number of states a cached pattern's DFA may have
+     */
+    public PatternCache(int maxEntries, long maxBytes, int maxDfaStates) {
+        if (maxEntries <= 0 || maxBytes <= 0 || maxDfaStates <= 0) {
+            throw new IllegalArgumentException("Cache limits must be positive: " + maxEntries + ", " + maxBytes
+                    + ", " + maxDfaStates);
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.maxDfaStates = maxDfaStates;
+    }
+
+    /**
+     * Gets the compiled form of a pattern, parsing it if it is not cached. Parsing
+     * happens outside the cache's lock, so two threads missing on the same pattern at
+     * once may both parse it; only one result is kept.
+     *
+     * @param pattern the pattern to look up
+     * @return the cached entry for the pattern
+     * @throws RegexParseException if the pattern is not cached and fails to parse
+     */
+    public Entry get(String pattern) {
+        synchronized (this) {
+            Entry entry = entries.get(pattern);
+            if (entry != null) {
+                hits++;
+                return entry;
+            }
+            misses++;
+        }
+
+        Entry created = new Entry(this, pattern, RegexParser.parse(pattern));
+        synchronized (this) {
+            Entry raced = entries.get(pattern);
+            if (raced != null) {
+                return raced;
+            }
+            entries.put(pattern, created);
+            bytes += created.bytes;
+            evict();
+            return created;
+        }
+    }
+
+    /**
+     * Removes every entry. Counters are left alone.
+     */
+    public synchronized void clear() {
+        for (Entry entry : entries.values()) {
+            entry.evicted = true;
+        }
+        entries.clear();
+        bytes = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return estimated number of bytes used by the cached patterns
+     */
+    public synchronized long getEstimatedBytes() {
+        return bytes;
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "PatternCache[entries=" + entries.size() + ", bytes=" + bytes + ", hits=" + hits
+                + ", misses=" + misses + ", evictions=" + evictions + "]";
+    }
+
+    // Called by an entry that just built a derived form
+    private synchronized void grow(Entry entry, long added) {
+        if (entry.evicted) {
+            return;
+        }
+        entry.bytes += added;
+        bytes += added;
+        evict();
+    }
+
+    private void evict() {
+        Iterator<Entry> eldest = entries.values().iterator();
+        // never evict the last entry, even if it alone is over the byte budget
+        while ((entries.size() > maxEntries || bytes > maxBytes) && entries.size() > 1) {
+            Entry entry = eldest.next();
+            eldest.remove();
+            bytes -= entry.bytes;
+            entry.evicted = true;
+            evictions++;
+        }
+    }
+
+    // The automaton's object graph has about as many states and edges as its compiled form
+    private static long estimateBytes(String pattern, CompiledNfa compiled) {
+        return 2L * pattern.length() + compiled.getMemoryBytes()
+                + (long) STATE_BYTES * compiled.getStateCount()
+                + (long) EDGE_BYTES * (compiled.getCharEdgeCount() + compiled.getEpsilonEdgeCount()
+                + compiled.getClassEdgeCount());
+    }
+
+    /**
+     * A cached pattern together with the forms derived from it. Entries stay usable
+     * after they have been evicted; they just no longer count against the cache.
+     */
+    public static class Entry {
+        private final PatternCache owner;
+        private final String pattern;
+        private final Automaton automaton;
+        private final CompiledNfa compiledNfa;
+        private final Prefilter prefilter;
+        private Dfa dfa;
+        // set instead of dfa when the pattern is over the DFA state limit
+        private ResourceLimitException dfaFailure;
+
+        // both only written while holding the owner's lock
+        private boolean evicted;
+        private volatile long bytes;
+
+        private Entry(PatternCache owner, String pattern, Automaton parsed) {
+            this.owner = owner;
+            this.pattern = pattern;
+            this.automaton = AutomatonOptimizer.optimize(parsed);
+            // groups only survive in the automaton as parsed
+            this.compiledNfa = CompiledNfa.compile(parsed.getGroupCount() > 0 ? parsed : automaton);
+            this.prefilter = Prefilter.of(automaton);
+            this.bytes = estimateBytes(pattern, compiledNfa);
+        }
+
+        public String getPattern() {
+            return pattern;
+        }
+
+        /**
+         * @return the optimized automaton for the pattern, which has no capture groups
+         */
+        public Automaton getAutomaton() {
+            return automaton;
+        }
+
+        /**
+         * @return the compiled NFA for the pattern, with its capture groups if it has any
+         */
+        public CompiledNfa getCompiledNfa() {
+            return compiledNfa;
+        }
+
+        /**
+         * @return the literals every text the pattern accepts has to contain
+         */
+        public Prefilter getPrefilter() {
+            return prefilter;
+        }
+
+        /**
+         * @return the minimal DFA for the pattern, built on first use
+         * @throws ResourceLimitException if the DFA needs more states than the cache allows. The
+         *                                failure is remembered and later calls rethrow it
+         *                                without determinizing again; the entry's other
+         *                                forms stay usable
+         */
+        public Dfa getDfa() {
+            Dfa result;
+            boolean built = false;
+            synchronized (this) {
+                if (dfaFailure != null) {
+                    throw dfaFailure;
+                }
+                if (dfa == null) {
+                    try {
+                        dfa = DfaCompiler.compile(automaton, owner.maxDfaStates);
+                    } catch (ResourceLimitException e) {
+                        dfaFailure = e;
+                        throw e;
+                    }
+                    built = true;
+                }
+                result = dfa;
+            }
+            // account outside our own lock so we never hold it while waiting for the cache's
+            if (built) {
+                owner.grow(this, result.getTableBytes());
+            }
+            return result;
+        }
+
+        /**
+         * @return estimated number of bytes used by the pattern and its derived forms
+         */
+        public long getEstimatedBytes() {
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+/**
+ * Simulates a {@link CompiledNfa} in the style of Pike's VM: the current and next
+ * state lists are preallocated sparse sets and epsilon closure is the union of the
+ * closures the NFA precomputed (or, without a closure table, a single pass over an
+ * explicit worklist), so a match runs in O(n*m) time for n characters and m states
+ * and performs no heap allocation.
+ * <p>
+ * A PikeVM keeps its scratch space between calls and is therefore not thread safe;
+ * {@link CompiledNfa#matches(CharSequence)} keeps one per thread.
+ */
+public class PikeVM {
+    // the nfa itself is not kept, so a matcher cached per thread never keeps it alive
+    private final int start;
+    private final int stateCount;
+    private final int[] charOffsets;
+    private final char[] charLabels;
+    private final int[] charTargets;
+    private final int[] epsilonOffsets;
+    private final int[] epsilonTargets;
+    private final int[] classOffsets;
+    private final CharClass[] classLabels;
+    private final int[] classTargets;
+    private final int[] closureOffsets;
+    private final int[] closureStates;
+    private final int accept;
+
+    private SparseSet current;
+    private SparseSet next;
+    private final int[] worklist;
+
+    /**
+     * Create a matcher for the given NFA
+     *
+     * @param nfa the nfa to simulate
+     */
+    public PikeVM(CompiledNfa nfa) {
+        this.start = nfa.getStartState();
+        this.stateCount = nfa.getStateCount();
+        this.charOffsets = nfa.getCharOffsets();
+        this.charLabels = nfa.getCharLabels();
+        this.charTargets = nfa.getCharTargets();
+        this.epsilonOffsets = nfa.getEpsilonOffsets();
+        this.epsilonTargets = nfa.getEpsilonTargets();
+        this.classOffsets = nfa.getClassOffsets();
+        this.classLabels = nfa.getClassLabels();
+        this.classTargets = nfa.getClassTargets();
+        this.closureOffsets = nfa.getClosureOffsets();
+        this.closureStates = nfa.getClosureStates();
+        this.accept = nfa.getAcceptState();
+
+        int n = nfa.getStateCount();
+        this.current = new SparseSet(n);
+        this.next = new SparseSet(n);
+        this.worklist = new int[n];
+    }
+
+    /**
+     * Determines whether or not the given text is accepted by the NFA
+     *
+     * @param text the text to try matching
+     * @return true if the text is accepted, else false
+     */
+    public boolean matches(CharSequence text) {
+        reset();
+        for (int i = 0; i < text.length(); i++) {
+            if (!step(text.charAt(i))) {
+                return false;
+            }
+        }
+        return isAccepting();
+    }
+
+    /**
+     * Puts the simulation back at the epsilon closure of the start state
+     */
+    void reset() {
+        current.clear();
+        addClosed(current, start);
+    }
+
+    /**
+     * Consumes one character
+     *
+     * @param ch the character to consume
+     * @return false if no state survived, in which case no continuation can match
+     */
+    boolean step(char ch) {
+        SparseSet from = current;
+        SparseSet to = next;
+        to.clear();
+        for (int j = 0; j < from.size(); j++) {
+            int s = from.get(j);
+            // labels are sorted, so stop as soon as they pass ch
+            for (int e = charOffsets[s]; e < charOffsets[s + 1] && charLabels[e] <= ch; e++) {
+                if (charLabels[e] == ch) {
+                    addClosed(to, charTargets[e]);
+                }
+            }
+            for (int e = classOffsets[s]; e < classOffsets[s + 1]; e++) {
+                if (classLabels[e].contains(ch)) {
+                    addClosed(to, classTargets[e]);
+                }
+            }
+        }
+        current = to;
+        next = from;
+        return !to.isEmpty();
+    }
+
+    /**
+     * @return true if the characters consumed since the last reset are accepted
+     */
+    boolean isAccepting() {
+        // an unreachable accept state is numbered past the end of the sets
+        return accept < stateCount && current.contains(accept);
+    }
+
+    // Adds a state and everything epsilon reachable from it to the set
+    private void addClosed(SparseSet set, int state) {
+        if (closureOffsets != null) {
+            // a state already in the set came with its whole closure, by transitivity
+            if (set.contains(state)) {
+                return;
+            }
+            for (int e = closureOffsets[state]; e < closureOffsets[state + 1]; e++) {
+                set.add(closureStates[e]);
+            }
+            return;
+        }
+        if (!set.add(state)) {
+            return;
+        }
+        int top = 0;
+        worklist[top++] = state;
+        while (top > 0) {
+            int s = worklist[--top];
+            for (int e = epsilonOffsets[s]; e < epsilonOffsets[s + 1]; e++) {
+                int target = epsilonTargets[e];
+                if (set.add(target)) {
+                    worklist[top++] = target;
+                }
+            }
+        }
+    }
+}
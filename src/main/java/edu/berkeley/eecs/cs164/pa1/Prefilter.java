@@ -0,0 +1,298 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Literal text every input accepted by an automaton has to contain, found by looking
+ * at the automaton's graph. Checking for it with {@link String#startsWith(String)} and
+ * {@link String#indexOf(String)}, which the JVM turns into vectorized scans, throws
+ * out most non-matching inputs long before a simulation would.
+ * <ul>
+ * <li>The <em>prefix</em> is the text every accepted input starts with: as long as
+ * the start closure can't accept yet and all of its character transitions carry the
+ * same single character, that character is required.</li>
+ * <li>The <em>required literal</em> is the longest text every accepted input contains
+ * somewhere. It starts at a transition every path to the out state has to take (an
+ * edge whose removal disconnects the out state) and goes on for as long as the
+ * following characters are forced in the same way as the prefix.</li>
+ * </ul>
+ * The required transitions are found in a single pass over the graph, so the analysis
+ * costs time linear in the size of the automaton.
+ * Either may be empty; a pattern like (a|b)* requires nothing. Instances are immutable.
+ */
+public class Prefilter {
+    /** Literals are not extended past this many characters */
+    static final int MAX_LITERAL_LENGTH = 64;
+
+    // Literals are only extended from this many required transitions, each of which costs
+    // up to MAX_LITERAL_LENGTH closures
+    private static final int MAX_EXTENDED_EDGES = 256;
+
+    private static final Prefilter NONE = new Prefilter("", "");
+
+    private final String prefix;
+    private final String requiredLiteral;
+
+    private Prefilter(String prefix, String requiredLiteral) {
+        this.prefix = prefix;
+        this.requiredLiteral = requiredLiteral;
+    }
+
+    /**
+     * Analyzes the given NFA
+     *
+     * @param nfa the nfa to analyze
+     * @return the literals the nfa requires
+     */
+    public static Prefilter of(Automaton nfa) {
+        Set<AutomatonState> start = new HashSet<AutomatonState>();
+        start.add(nfa.getStart());
+        String prefix = forcedLiteral(start, nfa.getOut(), "");
+
+        String required = prefix;
+        List<AutomatonState> states = nfa.getReachableStates();
+        List<int[]> edges = new Graph(states, nfa.getOut()).requiredLiteralEdges();
+        for (int e = 0; e < edges.size() && e < MAX_EXTENDED_EDGES; e++) {
+            if (required.length() == MAX_LITERAL_LENGTH) {
+                break;
+            }
+            int[] edge = edges.get(e);
+            Set<AutomatonState> after = new HashSet<AutomatonState>();
+            after.add(states.get(edge[2]));
+            String literal = forcedLiteral(after, nfa.getOut(), String.valueOf((char) edge[1]));
+            if (literal.length() > required.length()) {
+                required = literal;
+            }
+        }
+
+        if (prefix.isEmpty() && required.isEmpty()) {
+            return NONE;
+        }
+        // a prefix that is also the longest literal is checked by startsWith alone
+        return new Prefilter(prefix, required.equals(prefix) ? "" : required);
+    }
+
+    /**
+     * @return the text every accepted input starts with, possibly empty
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * @return the longest text every accepted input contains that is not already the
+     * prefix, possibly empty
+     */
+    public String getRequiredLiteral() {
+        return requiredLiteral;
+    }
+
+    /**
+     * @return true if the filter never rejects anything
+     */
+    public boolean isEmpty() {
+        return prefix.isEmpty() && requiredLiteral.isEmpty();
+    }
+
+    /**
+     * Quickly checks whether the whole text could be accepted
+     *
+     * @param text the text to check
+     * @return false if the text cannot be accepted; true if it has to be matched to tell
+     */
+    public boolean mayMatch(String text) {
+        return text.startsWith(prefix) && (requiredLiteral.isEmpty() || text.contains(requiredLiteral));
+    }
+
+    /**
+     * Finds the next offset a match inside the text could start at
+     *
+     * @param text the text to search
+     * @param from the first offset to consider
+     * @return the first offset at or after from where the prefix occurs, or -1 if there is none
+     */
+    public int nextCandidate(String text, int from) {
+        return text.indexOf(prefix, from);
+    }
+
+    @Override
+    public String toString() {
+        return "Prefilter[prefix=\"" + prefix + "\", required=\"" + requiredLiteral + "\"]";
+    }
+
+    // Extends the literal for as long as every path from the given states has to read the
+    // same next character before it can accept
+    private static String forcedLiteral(Set<AutomatonState> from, AutomatonState out, String literal) {
+        StringBuilder builder = new StringBuilder(literal);
+        HashSet<AutomatonState> current = new HashSet<AutomatonState>(from);
+        while (builder.length() < MAX_LITERAL_LENGTH) {
+            HashSet<AutomatonState> closure = NFASimulator.getEpsilonClosure(current);
+            if (closure.contains(out)) {
+                break;
+            }
+            Character next = null;
+            HashSet<AutomatonState> targets = new HashSet<AutomatonState>();
+            for (AutomatonState state : closure) {
+                if (!state.getClassTransitions().isEmpty()) {
+                    return builder.toString();
+                }
+                for (Map.Entry<Character, Set<AutomatonState>> entry : state.getAllTransitions()) {
+                    if (entry.getKey() == null) {
+                        continue;
+                    }
+                    if (next != null && !next.equals(entry.getKey())) {
+                        return builder.toString();
+                    }
+                    next = entry.getKey();
+                    targets.addAll(entry.getValue());
+                }
+            }
+            if (next == null) {
+                break;
+            }
+            builder.append(next.charValue());
+            current = targets;
+        }
+        return builder.toString();
+    }
+
+    private static Map<AutomatonState, Integer> indexOf(List<AutomatonState> states) {
+        Map<AutomatonState, Integer> index = new HashMap<AutomatonState, Integer>();
+        for (int s = 0; s < states.size(); s++) {
+            index.put(states.get(s), s);
+        }
+        return index;
+    }
+
+    // The automaton's transitions as adjacency lists of state indexes, each with its
+    // character or -1 for epsilon and class transitions. Parallel transitions between the
+    // same pair of states stay separate entries, since either one alone keeps the pair
+    // connected.
+    private static final class Graph {
+        private final int[][] successors;
+        private final int[][] labels;
+        private final int out;
+
+        Graph(List<AutomatonState> states, AutomatonState outState) {
+            Map<AutomatonState, Integer> index = indexOf(states);
+            successors = new int[states.size()][];
+            labels = new int[states.size()][];
+            for (int s = 0; s < states.size(); s++) {
+                List<Integer> targets = new ArrayList<Integer>();
+                List<Integer> chars = new ArrayList<Integer>();
+                AutomatonState state = states.get(s);
+                for (Map.Entry<Character, Set<AutomatonState>> entry : state.getAllTransitions()) {
+                    for (AutomatonState target : entry.getValue()) {
+                        targets.add(index.get(target));
+                        chars.add(entry.getKey() == null ? -1 : (int) entry.getKey());
+                    }
+                }
+                for (Map.Entry<CharClass, Set<AutomatonState>> entry : state.getClassTransitions()) {
+                    for (AutomatonState target : entry.getValue()) {
+                        targets.add(index.get(target));
+                        chars.add(-1);
+                    }
+                }
+                successors[s] = new int[targets.size()];
+                labels[s] = new int[targets.size()];
+                for (int i = 0; i < successors[s].length; i++) {
+                    successors[s][i] = targets.get(i);
+                    labels[s][i] = chars.get(i);
+                }
+            }
+            Integer outIndex = index.get(outState);
+            out = outIndex == null ? -1 : outIndex;
+        }
+
+        // Lists the single character transitions whose removal would disconnect the out
+        // state from the start, as {source, label, target} in the order paths take them.
+        // Any such transition lies on every path, so only the edges of one path p0..pk
+        // are candidates. Edge i is required unless a detour leaves the path at some
+        // p(a), a <= i, and rejoins it at some p(c), c > i. Sweeping i upwards and
+        // searching off the path from each p(i) finds the furthest rejoin so far; a
+        // state off the path only needs searching once, since whatever it reaches is
+        // already reachable from the earlier position that found it.
+        List<int[]> requiredLiteralEdges() {
+            List<int[]> required = new ArrayList<int[]>();
+            if (out <= 0) {
+                return required;
+            }
+
+            // a shortest path, as the state and the index of the edge taken out of it
+            int n = successors.length;
+            int[] parent = new int[n];
+            int[] parentEdge = new int[n];
+            Arrays.fill(parent, -1);
+            parent[0] = 0;
+            int[] queue = new int[n];
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = 0;
+            while (head < tail && parent[out] < 0) {
+                int s = queue[head++];
+                for (int i = 0; i < successors[s].length; i++) {
+                    int target = successors[s][i];
+                    if (parent[target] < 0) {
+                        parent[target] = s;
+                        parentEdge[target] = i;
+                        queue[tail++] = target;
+                    }
+                }
+            }
+            if (parent[out] < 0) {
+                return required;
+            }
+            int length = 0;
+            for (int s = out; s != 0; s = parent[s]) {
+                length++;
+            }
+            int[] path = new int[length + 1];
+            int[] pathEdge = new int[length];
+            int[] position = new int[n];
+            Arrays.fill(position, -1);
+            for (int s = out, p = length; ; s = parent[s], p--) {
+                path[p] = s;
+                position[s] = p;
+                if (p == 0) {
+                    break;
+                }
+                pathEdge[p - 1] = parentEdge[s];
+            }
+
+            boolean[] visited = new boolean[n];
+            int[] worklist = new int[n];
+            int reach = 0;
+            for (int p = 0; p < length; p++) {
+                // only states off the path are ever pushed besides p(p) itself
+                int top = 0;
+                worklist[top++] = path[p];
+                while (top > 0) {
+                    int s = worklist[--top];
+                    for (int i = 0; i < successors[s].length; i++) {
+                        if (s == path[p] && i == pathEdge[p]) {
+                            continue;
+                        }
+                        int target = successors[s][i];
+                        if (position[target] >= 0) {
+                            reach = Math.max(reach, position[target]);
+                        } else if (!visited[target]) {
+                            visited[target] = true;
+                            worklist[top++] = target;
+                        }
+                    }
+                }
+                int label = labels[path[p]][pathEdge[p]];
+                if (reach <= p && label >= 0) {
+                    required.add(new int[]{path[p], label, path[p + 1]});
+                }
+            }
+            return required;
+        }
+    }
+}
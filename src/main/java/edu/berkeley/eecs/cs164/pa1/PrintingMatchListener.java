@@ -0,0 +1,62 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.io.PrintStream;
+
+/**
+ * A {@link MatchListener} that writes a human readable trace of every match, handy for
+ * figuring out why a pattern does or doesn't accept some input.
+ */
+public class PrintingMatchListener implements MatchListener {
+    private final PrintStream out;
+    private final boolean printSteps;
+    private String text;
+
+    /**
+     * Create a listener that prints start, rejection and result of every match
+     *
+     * @param out the stream to print to
+     */
+    public PrintingMatchListener(PrintStream out) {
+        this(out, false);
+    }
+
+    /**
+     * Create a listener that prints to the given stream
+     *
+     * @param out        the stream to print to
+     * @param printSteps whether to print a line for every character consumed as well
+     */
+    public PrintingMatchListener(PrintStream out, boolean printSteps) {
+        this.out = out;
+        this.printSteps = printSteps;
+    }
+
+    @Override
+    public void matchStarted(String text, int closureSize) {
+        this.text = text;
+        out.printf("After preliminary epsilon enclosure, our set has %d elements.%n", closureSize);
+    }
+
+    @Override
+    public void stepped(int offset, int reachableSize, int closureSize) {
+        if (printSteps) {
+            out.printf("Character %d: %d states reachable, %d after epsilon enclosure.%n",
+                    offset + 1, reachableSize, closureSize);
+        }
+    }
+
+    @Override
+    public void rejected(int offset) {
+        out.printf("At character %d out of %d in %s we found that it is not in the language.%n",
+                offset + 1, text.length(), text);
+    }
+
+    @Override
+    public void matchFinished(boolean accepted, int steps) {
+        if (accepted) {
+            out.printf("Reached end of input. Made to out state.%n");
+        } else if (steps == text.length()) {
+            out.printf("Reached end of input. Couldn't reach out state.%n");
+        }
+    }
+}
@@ -2,30 +2,53 @@ package edu.berkeley.eecs.cs164.pa1;
 
 
 /**
- * This class parses a simple regular expression syntax into an NFA
+ * This class parses a simple regular expression syntax into an NFA. Every call to
+ * {@link #parse(String)} uses its own parser instance, so patterns can be compiled
+ * from many threads at once.
  */
 public class RegexParser {
-	
-    private RegexParser() {
+    /** Largest count allowed in a bounded repetition such as a{2,1000} */
+    public static final int MAX_REPETITION = 1000;
+
+    /** Most NFA states {@link #parse(String)} lets a pattern build */
+    public static final int DEFAULT_MAX_STATES = 1 << 20;
+
+    private RegexParser(String pattern, int maxStates) {
+        input = pattern.toCharArray();
+        this.maxStates = maxStates;
     }
 
     /*
     Grammar:
     expr -> term ('|' term)*
     term -> factor*
-    factor -> atom'*'|atom'?'|atom'+'|atom
-    atom -> any character besides "()?|+*"
+    factor -> atom'*'|atom'?'|atom'+'|atom'{'n'}'|atom'{'n',}'|atom'{'n','m'}'|atom
+    atom -> any character besides "()?|+*[."
     atom -> "(" expr ")"
+    atom -> "." | "\d" | "\D" | "\w" | "\W" | "\s" | "\S"
+    atom -> "[" "^"? item+ "]"
+    item -> char | char "-" char | "\d" | "\w" | "\s"
+
+    Inside brackets a "]" right after "[" or "[^" and a "-" at either end are taken
+    literally; everywhere else they have to be escaped. A "{" that doesn't start one of the
+    counted repetitions above is an ordinary character.
+
+    Every "(" ")" is also a capture group, numbered from 1 by its "(" from left to right.
+    Epsilon transitions are added in priority order, so quantifiers are greedy and the
+    leftmost alternative is preferred.
     */
 
-    private static int pos;
-    private static char[] input;
-    private static char token;
-    
+    private final char[] input;
+    private int pos;
+    private char token;
+    private int groupCount;
+    private final int maxStates;
+    private long stateCount;
+
     // token2 will be used in the event that we are dealing with an
     // escape character, which is 2 characters, but we want to treat as
     // a single character. Is null if token isn't \
-    private static char token2;
+    private char token2;
 
     /**
      * This is the main function of this object. It kicks off
@@ -35,11 +58,31 @@ public class RegexParser {
      * @param pattern the pattern to compile
      * @return an NFA accepting the pattern
      * @throws RegexParseException upon encountering a parse error
+     * @throws ResourceLimitException if the NFA would have more than
+     *                                {@link #DEFAULT_MAX_STATES} states
      */
     public static Automaton parse(String pattern) {
-        pos = 0;
-        input = pattern.toCharArray();
+        return parse(pattern, DEFAULT_MAX_STATES);
+    }
 
+    /**
+     * Compiles a pattern into an NFA of at most the given number of states. Nested
+     * repetitions like (a{1000}){1000} multiply the size of the NFA, so untrusted
+     * patterns should be parsed with a limit that fits the memory they may use. The
+     * limit is checked as states are created, and before an atom is cloned for a
+     * repetition, so an oversized pattern fails without building its NFA.
+     *
+     * @param pattern   the pattern to compile
+     * @param maxStates most states the NFA may have
+     * @return an NFA accepting the pattern
+     * @throws RegexParseException    upon encountering a parse error
+     * @throws ResourceLimitException if the NFA would have more than maxStates states
+     */
+    public static Automaton parse(String pattern, int maxStates) {
+        return new RegexParser(pattern, maxStates).parse();
+    }
+
+    private Automaton parse() {
         // put the first character(s) into the holder, and then advance pos for the next
         // call to advance
         advance();
@@ -48,11 +91,11 @@ public class RegexParser {
         if (pos < input.length) {
             throw new RegexParseException("Parsing failed to process entire input string.");
         }
-        return completeNFA;
+        return new Automaton(completeNFA.getStart(), completeNFA.getOut(), groupCount);
     }
 
 
-    private static char getToken() {
+    private char getToken() {
         if (pos < input.length) {
             return input[pos++];
         } else {
@@ -60,7 +103,7 @@ public class RegexParser {
         }
     }
 
-    private static void advance() {
+    private void advance() {
         token2 = '\0';
         token = getToken();
         // if our current token is a \ character, then it means that we need to also
@@ -70,7 +113,7 @@ public class RegexParser {
         }
     }
 
-    private static void match(char t) {
+    private void match(char t) {
         if (token == t) {
             advance();
         } else {
@@ -81,11 +124,11 @@ public class RegexParser {
 
     // Generates an NFA that that can go into 1 or more term NFAs in order to implement
     // the alternation operand in regular expressions
-    private static Automaton expr() {
+    private Automaton expr() {
 
         // create start and end states for our terms to branch out and in
-        AutomatonState exprStart = new AutomatonState();
-        AutomatonState exprOut = new AutomatonState();
+        AutomatonState exprStart = newState();
+        AutomatonState exprOut = newState();
 
         // get our first term NFA starting at the first character that expr can apply to
         Automaton termNFA = term();
@@ -120,12 +163,12 @@ public class RegexParser {
 
     // the term operator generates a daisy chain of NFAs to implement concatenation.
     // this chain can be have 0 or more transitons
-    private static Automaton term() {
+    private Automaton term() {
         // We will need 3 states to create our term chain, a start state, an initial out
         // state and a current out state, which can be updated as we get more factors to
         // chain together.
-        AutomatonState startState = new AutomatonState();
-        AutomatonState initialout = new AutomatonState();;
+        AutomatonState startState = newState();
+        AutomatonState initialout = newState();
         AutomatonState currentOut = initialout;
 
         // we will connect together our start state and initial out state with an epsilon
@@ -167,13 +210,13 @@ public class RegexParser {
     // Factor creates an atom NFA, and then proceeds to apply one of the 3 quantifier
     // operations by adding extra epsilon transitions, or else just returning the atom
     // if the next token is not one of said quanifier characters
-    private static Automaton factor() {
+    private Automaton factor() {
         // create the atom NFA
         Automaton atomNFA = atom();
 
         // create start and out states to control the flow into or past the atom
-        AutomatonState factorStart = new AutomatonState();
-        AutomatonState factorOut = new AutomatonState();
+        AutomatonState factorStart = newState();
+        AutomatonState factorOut = newState();
 
         // if the next token is a Kleene star we need to make it possible to either cycle
         // back to the start of the atom NFA or exit 
@@ -200,15 +243,16 @@ public class RegexParser {
         // match against atom at least once
         else if (token == '+') {
             // To implement our "+" operation we need to add 3 epsilon transitions:
-            // 1. A transition from our atom out state to our factor NFA's out state
-            //    (we place it here to ensure atom is matched at least once)
-            // 2. A transition from our in-progress NFA's start to atom's start (to
+            // 1. A transition from our in-progress NFA's start to atom's start (to
             //    make atom enterable and matchable to begin with)
-            // 3. A transition from atom's out state to our factor start state (to
+            // 2. A transition from atom's out state to our factor start state (to
             //    enable repition at least once)
-            atomNFA.getOut().addEpsilonTransition(factorOut);
+            // 3. A transition from our atom out state to our factor NFA's out state
+            //    (we place it here to ensure atom is matched at least once)
+            // Repeating comes before leaving, so the loop is greedy
             factorStart.addEpsilonTransition(atomNFA.getStart());
             atomNFA.getOut().addEpsilonTransition(factorStart);
+            atomNFA.getOut().addEpsilonTransition(factorOut);
 
             // with the necessary transitions to allow for 1 or more consecutive atom checks
             // we can create and return our NFA
@@ -235,6 +279,20 @@ public class RegexParser {
         }
 
 
+        // counted repetition: the atom is cloned once per required or optional match (see repeat)
+        else if (token == '{' && scanRepetition() != null) {
+            int[] bounds = scanRepetition();
+            if (bounds[0] > MAX_REPETITION || bounds[1] > MAX_REPETITION) {
+                throw new RegexParseException("Repetition count exceeds " + MAX_REPETITION + ".");
+            }
+            if (bounds[1] >= 0 && bounds[1] < bounds[0]) {
+                throw new RegexParseException("Invalid repetition: {" + bounds[0] + "," + bounds[1] + "}.");
+            }
+            pos = bounds[2];
+            advance();
+            return repeat(atomNFA, bounds[0], bounds[1]);
+        }
+
         // if the character after atom is not one of the quantifiers, then we can just return atom
         // we also avoid advancing as we are likely currently on a new atom or other Non-terminal's input
         else {
@@ -244,11 +302,14 @@ public class RegexParser {
 
     // this function should either make a parenthesized expr or make a 2 state NFA with a non-epsilon
     // transition, assuming that the input is in our grammar
-    private static Automaton atom() {
+    private Automaton atom() {
         // if the first character atom looks at is a (, then we are dealing with a neted expression
         // and will need to construct a new expr
         if (token == '(') {
 
+            // groups are numbered in the order their "(" appear
+            int group = ++groupCount;
+
             // advance our token the first character in expr
             advance();
 
@@ -257,37 +318,43 @@ public class RegexParser {
 
             match(')');
 
-            // if the match succeeds, then we have a valid nest expression and we can return the automaton
-            return exprNFA;  
+            // if the match succeeds, then we have a valid nest expression. Its own start and out
+            // states record where the group starts and ends; fresh states around them keep the
+            // skip transition of a "?" from passing through both markers
+            exprNFA.getStart().setCaptureSlot(2 * group);
+            exprNFA.getOut().setCaptureSlot(2 * group + 1);
+            AutomatonState groupStart = newState();
+            AutomatonState groupOut = newState();
+            groupStart.addEpsilonTransition(exprNFA.getStart());
+            exprNFA.getOut().addEpsilonTransition(groupOut);
+            return new Automaton(groupStart, groupOut);
 
         // check to make sure that our current token is non-special character (i.e. it is not a
         // quantifier alternator, or an nested expression closer). Note that a nested expression
         // opener "(" is not allowed either, but will always be caught by the preceding conditional
         }
+        else if (token == '[') {
+            // a bracketed class becomes a single transition labelled with the whole class
+            return classAtom(bracketClass());
+        }
+        else if (token == '.') {
+            advance();
+            return classAtom(CharClass.ANY_BUT_NEWLINE);
+        }
         else if (token == '\\') {
+            // \d, \w and \s (and their negations) stand for a class rather than a character
+            CharClass escapedClass = escapedClass(token2);
+            if (escapedClass != null) {
+                advance();
+                return classAtom(escapedClass);
+            }
+
             // We are still performing a character match, just in a special case of a character, so we
             // will need a start and out state
-            AutomatonState escapeStart = new AutomatonState();
-            AutomatonState escapeOut = new AutomatonState();
-    
-            // we need to check that the character following the escape is one of the permitted
-            // escape characters
-            if (token2 == 'n'){escapeStart.addTransition('\n', escapeOut);}
-            else if (token2 == 't') {escapeStart.addTransition('\t', escapeOut);}
-            else if (token2 == '|') {escapeStart.addTransition('|', escapeOut);}
-            else if (token2 == '(') {escapeStart.addTransition('(', escapeOut);}
-            else if (token2 == ')') {escapeStart.addTransition(')', escapeOut);}
-            else if (token2 == '*') {escapeStart.addTransition('*', escapeOut);}
-            else if (token2 == '+') {escapeStart.addTransition('+', escapeOut);}
-            else if (token2 == '?') {escapeStart.addTransition('?', escapeOut);}
-            else if(token2 == '\\') {escapeStart.addTransition('\\', escapeOut);}
-
-            // if the second character doesn't match one of the characters our grammar allows escaping for,
-            // then the regex must be malformed and we throw an error.
-            else {
-                throw new RegexParseException("Unexpected escape character: " + token + token2);
-            }
-            
+            AutomatonState escapeStart = newState();
+            AutomatonState escapeOut = newState();
+            escapeStart.addTransition(escapedChar(), escapeOut);
+
             // having proccessed our portion of input, we advance so the previous call is in its part
             advance();
 
@@ -295,7 +362,8 @@ public class RegexParser {
             return new Automaton(escapeStart, escapeOut);
         }
         // if the term our atom is looking at is a special operator, then we have likely misparsed somewhere
-        else if (token == '?' || token == '+' || token == '*' || token == ')' || token == '|') {
+        else if (token == '?' || token == '+' || token == '*' || token == ')' || token == '|'
+                || (token == '{' && scanRepetition() != null)) {
 
             // if the current character is not an expression opener or a regular character (i.e. it is a nested
             // expression closer ")" or one of the regex operators  *+?|), something has gone wrong. Either an
@@ -309,8 +377,8 @@ public class RegexParser {
 
             // create 2 NFA states with a non-epsilon transition between them to match the character
             // expressed in the current pos on the input
-            AutomatonState atomNFAStart = new AutomatonState();
-            AutomatonState atomNFAOut = new AutomatonState();
+            AutomatonState atomNFAStart = newState();
+            AutomatonState atomNFAOut = newState();
             atomNFAStart.addTransition(token, atomNFAOut);
 
             // having processed our material here, we advance so the calling function is outside our stuff
@@ -320,4 +388,165 @@ public class RegexParser {
             return new Automaton(atomNFAStart, atomNFAOut);
         }
     }
+
+    // Builds atom{min,max}, with max -1 for no upper bound. The first min clones are
+    // chained; the optional ones are nested, each clone's out state either entering the
+    // next clone or leaving for the common out state, like (a(a(a)?)?)?. Unlike writing
+    // a?a?a? by hand, at most one optional clone is live per character, so a step costs
+    // the same no matter how large max is.
+    private Automaton repeat(Automaton atomNFA, int min, int max) {
+        AutomatonState repeatStart = newState();
+        AutomatonState repeatOut = newState();
+        int clones = max < 0 ? min + 1 : max;
+        if (clones > 1) {
+            countStates((long) atomNFA.getStateCount() * (clones - 1));
+        }
+        AutomatonState currentOut = repeatStart;
+
+        for (int i = 0; i < clones; i++) {
+            // the last clone can be the atom itself, which nothing else points at yet
+            Automaton clone = i == clones - 1 ? atomNFA : atomNFA.copy();
+            currentOut.addEpsilonTransition(clone.getStart());
+            if (i >= min) {
+                // every optional clone may be skipped, along with all the ones after it,
+                // but entering it is preferred
+                currentOut.addEpsilonTransition(repeatOut);
+            }
+            if (max < 0 && i == min) {
+                // the unbounded tail loops on a single clone, like '*'
+                clone.getOut().addEpsilonTransition(currentOut);
+            }
+            currentOut = clone.getOut();
+        }
+        currentOut.addEpsilonTransition(repeatOut);
+        return new Automaton(repeatStart, repeatOut);
+    }
+
+    private AutomatonState newState() {
+        countStates(1);
+        return new AutomatonState();
+    }
+
+    private void countStates(long count) {
+        stateCount += count;
+        if (stateCount > maxStates) {
+            throw new ResourceLimitException("Pattern needs more than " + maxStates + " NFA states.");
+        }
+    }
+
+    // Checks whether the "{" in token starts a counted repetition. Returns {n, m, end}
+    // where m is -1 for "{n,}" and end is the input position past the "}", or null if the
+    // brace is just a character. Counts too large to matter are clamped.
+    private int[] scanRepetition() {
+        int i = pos;
+        int min = 0;
+        int start = i;
+        while (i < input.length && input[i] >= '0' && input[i] <= '9') {
+            min = Math.min(min * 10 + (input[i++] - '0'), MAX_REPETITION + 1);
+        }
+        if (i == start || i >= input.length) {
+            return null;
+        }
+        if (input[i] == '}') {
+            return new int[]{min, min, i + 1};
+        }
+        if (input[i++] != ',') {
+            return null;
+        }
+        int max = 0;
+        start = i;
+        while (i < input.length && input[i] >= '0' && input[i] <= '9') {
+            max = Math.min(max * 10 + (input[i++] - '0'), MAX_REPETITION + 1);
+        }
+        if (i >= input.length || input[i] != '}') {
+            return null;
+        }
+        return new int[]{min, i == start ? -1 : max, i + 1};
+    }
+
+    // makes a 2 state NFA whose only transition is taken on any character of the class
+    private Automaton classAtom(CharClass cls) {
+        AutomatonState classStart = newState();
+        AutomatonState classOut = newState();
+        classStart.addTransition(cls, classOut);
+        return new Automaton(classStart, classOut);
+    }
+
+    // parses a bracketed class, starting on the "[" and ending past the "]"
+    private CharClass bracketClass() {
+        advance();
+        boolean negated = false;
+        if (token == '^') {
+            negated = true;
+            advance();
+        }
+
+        // plain characters and ranges are collected as lo, hi pairs; \d, \w and \s are
+        // merged in as whole classes
+        StringBuilder ranges = new StringBuilder();
+        CharClass cls = CharClass.of();
+        do {
+            if (token == 0) {
+                throw new RegexParseException("Unterminated character class.");
+            }
+            CharClass escapedClass = token == '\\' ? escapedClass(token2) : null;
+            if (escapedClass != null) {
+                cls = cls.union(escapedClass);
+                advance();
+                continue;
+            }
+            char lo = classChar();
+            char hi = lo;
+            // a "-" right before the closing "]" is just a character
+            if (token == '-' && pos < input.length && input[pos] != ']') {
+                advance();
+                hi = classChar();
+                if (hi < lo) {
+                    throw new RegexParseException("Invalid range in character class: " + lo + "-" + hi);
+                }
+            }
+            ranges.append(lo).append(hi);
+        } while (token != ']');
+        advance();
+
+        cls = cls.union(CharClass.of(ranges.toString().toCharArray()));
+        return negated ? cls.negate() : cls;
+    }
+
+    // reads one possibly escaped character inside brackets
+    private char classChar() {
+        if (token == 0) {
+            throw new RegexParseException("Unterminated character class.");
+        }
+        char ch = token == '\\' ? escapedChar() : token;
+        advance();
+        return ch;
+    }
+
+    // the character an escape sequence stands for; token must be the backslash
+    private char escapedChar() {
+        // we need to check that the character following the escape is one of the permitted
+        // escape characters
+        if (token2 == 'n') {return '\n';}
+        else if (token2 == 't') {return '\t';}
+        else if (token2 == 'r') {return '\r';}
+        else if ("|()*+?\\.[]-^{}".indexOf(token2) >= 0) {return token2;}
+
+        // if the second character doesn't match one of the characters our grammar allows escaping for,
+        // then the regex must be malformed and we throw an error.
+        throw new RegexParseException("Unexpected escape character: " + token + token2);
+    }
+
+    // the class a \d, \w or \s escape or one of their upper case negations stands for, else null
+    private static CharClass escapedClass(char escape) {
+        switch (escape) {
+            case 'd': return CharClass.DIGIT;
+            case 'D': return CharClass.DIGIT.negate();
+            case 'w': return CharClass.WORD;
+            case 'W': return CharClass.WORD.negate();
+            case 's': return CharClass.SPACE;
+            case 'S': return CharClass.SPACE.negate();
+            default: return null;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,118 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Matches one input against many patterns in a single scan. Copies of the patterns'
+ * automata are joined under a shared start state and each copy's out state gets an
+ * epsilon transition to a fresh state tagged with the pattern's index. The combined NFA is run
+ * as a {@link LazyDfa}, so after warm up an input costs one table lookup per character
+ * no matter how many patterns there are.
+ * <p>
+ * Instances are thread safe; every thread builds its own DFA cache.
+ */
+public class RegexSet {
+    /** Default cache budget per thread: 32 MB */
+    public static final long DEFAULT_MAX_CACHE_BYTES = 32L * 1024 * 1024;
+
+    private final int size;
+    private final AutomatonState start;
+    private final Map<AutomatonState, Integer> acceptIds;
+    private final long maxCacheBytes;
+    private final ThreadLocal<LazyDfa> threadDfas = new ThreadLocal<LazyDfa>() {
+        @Override
+        protected LazyDfa initialValue() {
+            return new LazyDfa(start, acceptIds, maxCacheBytes);
+        }
+    };
+
+    /**
+     * Create a set from already parsed patterns. The set works on copies, so the automata
+     * are left untouched and may be shared with other threads or sets.
+     *
+     * @param patterns      the patterns; a pattern's id is its index in the list
+     * @param maxCacheBytes approximate memory each thread's DFA cache may use
+     */
+    public RegexSet(List<Automaton> patterns, long maxCacheBytes) {
+        this(patterns, maxCacheBytes, true);
+    }
+
+    public RegexSet(List<Automaton> patterns) {
+        this(patterns, DEFAULT_MAX_CACHE_BYTES);
+    }
+
+    // patterns nobody else has seen yet can be joined as they are
+    private RegexSet(List<Automaton> patterns, long maxCacheBytes, boolean copy) {
+        this.size = patterns.size();
+        this.maxCacheBytes = maxCacheBytes;
+        this.start = new AutomatonState();
+        Map<AutomatonState, Integer> ids = new HashMap<AutomatonState, Integer>();
+        for (int i = 0; i < patterns.size(); i++) {
+            Automaton pattern = copy ? patterns.get(i).copy() : patterns.get(i);
+            AutomatonState tagged = new AutomatonState();
+            start.addEpsilonTransition(pattern.getStart());
+            pattern.getOut().addEpsilonTransition(tagged);
+            ids.put(tagged, i);
+        }
+        this.acceptIds = Collections.unmodifiableMap(ids);
+    }
+
+    /**
+     * Parses the patterns and builds a set from them
+     *
+     * @param patterns the patterns; a pattern's id is its position
+     * @return the set
+     * @throws RegexParseException if any pattern fails to parse
+     */
+    public static RegexSet compile(String... patterns) {
+        List<Automaton> automata = new ArrayList<Automaton>();
+        for (String pattern : patterns) {
+            automata.add(RegexParser.parse(pattern));
+        }
+        return new RegexSet(automata, DEFAULT_MAX_CACHE_BYTES, false);
+    }
+
+    /**
+     * @return number of patterns in the set
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds every pattern that accepts the whole text
+     *
+     * @param text the text to try matching
+     * @return the ids of the accepting patterns
+     */
+    public BitSet matches(String text) {
+        BitSet matched = new BitSet(size);
+        for (int id : threadDfas.get().matchingIds(text)) {
+            matched.set(id);
+        }
+        return matched;
+    }
+
+    /**
+     * Finds every pattern that accepts the whole text
+     *
+     * @param text the text to try matching
+     * @return the ids of the accepting patterns in ascending order
+     */
+    public int[] matchingIds(String text) {
+        return threadDfas.get().matchingIds(text).clone();
+    }
+
+    /**
+     * @param text the text to try matching
+     * @return true if at least one pattern accepts the text
+     */
+    public boolean matchesAny(String text) {
+        return threadDfas.get().matches(text);
+    }
+}
@@ -0,0 +1,12 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+/**
+ * Thrown when a pattern or a match would use more states, characters or steps than the
+ * limit it was given. Unlike a {@link RegexParseException} the pattern is valid; it is
+ * just too expensive to compile or run within the configured budget.
+ */
+public class ResourceLimitException extends RuntimeException {
+    public ResourceLimitException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,59 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+/**
+ * A set of small integers in 0..capacity-1 using the dense/sparse array trick from
+ * Briggs and Torczon: membership, insertion and clearing are all O(1), and members
+ * can be iterated in insertion order through the dense array. Nothing is allocated
+ * after construction.
+ */
+class SparseSet {
+    private final int[] dense;
+    private final int[] sparse;
+    private int size;
+
+    SparseSet(int capacity) {
+        dense = new int[capacity];
+        sparse = new int[capacity];
+    }
+
+    boolean contains(int value) {
+        int index = sparse[value];
+        return index < size && dense[index] == value;
+    }
+
+    /**
+     * Adds a value to the set
+     *
+     * @param value the value to add
+     * @return true if the value was not already present
+     */
+    boolean add(int value) {
+        if (contains(value)) {
+            return false;
+        }
+        dense[size] = value;
+        sparse[value] = size;
+        size++;
+        return true;
+    }
+
+    /**
+     * @param index position in insertion order, below {@link #size()}
+     * @return the member at that position
+     */
+    int get(int index) {
+        return dense[index];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        size = 0;
+    }
+}
@@ -0,0 +1,196 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Matches text that arrives in pieces. Chunks are handed to one of the {@code feed}
+ * methods as they are read and {@link #finish()} reports whether everything fed so far
+ * is accepted; only the current state set is kept between chunks, so memory use does
+ * not depend on the length of the input.
+ * <p>
+ * Byte input is read as ISO-8859-1, i.e. every byte is matched as the character with
+ * the same value, which is exact for ASCII data.
+ * <p>
+ * Instances are not thread safe.
+ */
+public class StreamingMatcher {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final PikeVM vm;
+    private boolean dead;
+    private long position;
+
+    /**
+     * Create a streaming matcher for the given NFA
+     *
+     * @param nfa the nfa to match against
+     */
+    public StreamingMatcher(CompiledNfa nfa) {
+        this.vm = new PikeVM(nfa);
+        reset();
+    }
+
+    /**
+     * Create a streaming matcher for the given NFA
+     *
+     * @param nfa the nfa to match against
+     */
+    public StreamingMatcher(Automaton nfa) {
+        this(CompiledNfa.compile(nfa));
+    }
+
+    /**
+     * Forgets everything fed so far and starts a new input
+     */
+    public void reset() {
+        vm.reset();
+        dead = false;
+        position = 0;
+    }
+
+    /**
+     * @return true if no continuation of the input fed so far can be accepted, so the
+     * rest of the input does not need to be read
+     */
+    public boolean isDead() {
+        return dead;
+    }
+
+    /**
+     * @return number of characters fed since the last reset
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    public void feed(char[] chunk) {
+        feed(chunk, 0, chunk.length);
+    }
+
+    /**
+     * Consumes part of a character array
+     *
+     * @param chunk  the characters to consume
+     * @param offset index of the first character to consume
+     * @param length number of characters to consume
+     */
+    public void feed(char[] chunk, int offset, int length) {
+        position += length;
+        for (int i = offset; i < offset + length && !dead; i++) {
+            dead = !vm.step(chunk[i]);
+        }
+    }
+
+    public void feed(CharSequence chunk) {
+        position += chunk.length();
+        for (int i = 0; i < chunk.length() && !dead; i++) {
+            dead = !vm.step(chunk.charAt(i));
+        }
+    }
+
+    /**
+     * Consumes the remaining characters of the buffer, leaving it at its limit
+     *
+     * @param chunk the characters to consume
+     */
+    public void feed(CharBuffer chunk) {
+        if (chunk.hasArray()) {
+            feed(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+            chunk.position(chunk.limit());
+            return;
+        }
+        position += chunk.remaining();
+        while (chunk.hasRemaining() && !dead) {
+            dead = !vm.step(chunk.get());
+        }
+        chunk.position(chunk.limit());
+    }
+
+    /**
+     * Consumes the remaining bytes of the buffer as ISO-8859-1 characters, leaving it at
+     * its limit
+     *
+     * @param chunk the bytes to consume
+     */
+    public void feed(ByteBuffer chunk) {
+        position += chunk.remaining();
+        while (chunk.hasRemaining() && !dead) {
+            dead = !vm.step((char) (chunk.get() & 0xff));
+        }
+        chunk.position(chunk.limit());
+    }
+
+    /**
+     * Ends the input and resets the matcher so it can be reused for the next one
+     *
+     * @return true if everything fed since the last reset is accepted, else false
+     */
+    public boolean finish() {
+        boolean accepted = !dead && vm.isAccepting();
+        reset();
+        return accepted;
+    }
+
+    /**
+     * Reads the reader to its end (or until a match is impossible) and matches what was read.
+     * The reader is not closed.
+     *
+     * @param nfa    the nfa to match against
+     * @param reader the text to match
+     * @return true if the text is accepted, else false
+     * @throws IOException if reading fails
+     */
+    public static boolean matches(CompiledNfa nfa, Reader reader) throws IOException {
+        StreamingMatcher matcher = new StreamingMatcher(nfa);
+        char[] buffer = new char[BUFFER_SIZE];
+        int read;
+        while (!matcher.isDead() && (read = reader.read(buffer)) >= 0) {
+            matcher.feed(buffer, 0, read);
+        }
+        return matcher.finish();
+    }
+
+    /**
+     * Reads the stream to its end (or until a match is impossible) and matches the bytes as
+     * ISO-8859-1 text. The stream is not closed.
+     *
+     * @param nfa the nfa to match against
+     * @param in  the bytes to match
+     * @return true if the text is accepted, else false
+     * @throws IOException if reading fails
+     */
+    public static boolean matches(CompiledNfa nfa, InputStream in) throws IOException {
+        StreamingMatcher matcher = new StreamingMatcher(nfa);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while (!matcher.isDead() && (read = in.read(buffer)) >= 0) {
+            matcher.feed(ByteBuffer.wrap(buffer, 0, read));
+        }
+        return matcher.finish();
+    }
+
+    /**
+     * Reads the channel to its end (or until a match is impossible) and matches the bytes as
+     * ISO-8859-1 text. The channel is not closed.
+     *
+     * @param nfa     the nfa to match against
+     * @param channel the bytes to match
+     * @return true if the text is accepted, else false
+     * @throws IOException if reading fails
+     */
+    public static boolean matches(CompiledNfa nfa, ReadableByteChannel channel) throws IOException {
+        StreamingMatcher matcher = new StreamingMatcher(nfa);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        while (!matcher.isDead() && channel.read(buffer) >= 0) {
+            buffer.flip();
+            matcher.feed(buffer);
+            buffer.clear();
+        }
+        return matcher.finish();
+    }
+}
@@ -0,0 +1,134 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+public class AutomatonFormatTest {
+    private static final String[] PATTERNS = {
+            "", "a", "(ab|c)*d?", "[a-z]+@[^@]+\\.(com|org)", "(\\d{3})-(\\d{4})", "a{2,5}b*", ".\\w\\s\\D",
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // random strings over characters the patterns care about
+    private static String[] inputs() {
+        Random random = new Random(164);
+        String alphabet = "abcd@.-0123456789 zXoé";
+        String[] inputs = new String[500];
+        for (int i = 0; i < inputs.length; i++) {
+            StringBuilder input = new StringBuilder();
+            for (int n = random.nextInt(12); n > 0; n--) {
+                input.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            inputs[i] = input.toString();
+        }
+        inputs[0] = "joe@cs.org";
+        inputs[1] = "555-1234";
+        return inputs;
+    }
+
+    @Test
+    public void testNfaRoundTrip() {
+        String[] inputs = inputs();
+        for (String pattern : PATTERNS) {
+            CompiledNfa nfa = CompiledNfa.compile(RegexParser.parse(pattern));
+            ByteBuffer buffer = ByteBuffer.wrap(AutomatonFormat.toBytes(nfa));
+            CompiledNfa loaded = AutomatonFormat.readNfa(buffer);
+            Assert.assertFalse(buffer.hasRemaining());
+            Assert.assertEquals(nfa.getStateCount(), loaded.getStateCount());
+            Assert.assertEquals(nfa.getGroupCount(), loaded.getGroupCount());
+            Assert.assertEquals(nfa.hasClosureTable(), loaded.hasClosureTable());
+            for (String input : inputs) {
+                Assert.assertEquals(pattern + " on " + input, nfa.matches(input), loaded.matches(input));
+                Assert.assertEquals(pattern + " on " + input, nfa.getThreadCaptureMatcher().find(input),
+                        loaded.getThreadCaptureMatcher().find(input));
+            }
+        }
+    }
+
+    @Test
+    public void testDfaRoundTrip() {
+        String[] inputs = inputs();
+        for (String pattern : PATTERNS) {
+            Dfa dfa = DfaCompiler.compile(RegexParser.parse(pattern));
+            ByteBuffer buffer = ByteBuffer.wrap(AutomatonFormat.toBytes(dfa));
+            Dfa loaded = AutomatonFormat.readDfa(buffer);
+            Assert.assertFalse(buffer.hasRemaining());
+            Assert.assertEquals(dfa.getStateCount(), loaded.getStateCount());
+            Assert.assertEquals(dfa.getAlphabet().getClassCount(), loaded.getAlphabet().getClassCount());
+            for (String input : inputs) {
+                Assert.assertEquals(pattern + " on " + input,
+                        new DfaMatcher(dfa).matches(input), new DfaMatcher(loaded).matches(input));
+            }
+        }
+    }
+
+    @Test
+    public void testMappedFile() throws Exception {
+        File file = folder.newFile("patterns.bin");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            for (String pattern : PATTERNS) {
+                out.write(AutomatonFormat.toBytes(CompiledNfa.compile(RegexParser.parse(pattern))));
+                out.write(AutomatonFormat.toBytes(DfaCompiler.compile(RegexParser.parse(pattern))));
+            }
+        } finally {
+            out.close();
+        }
+
+        ByteBuffer buffer = AutomatonFormat.map(file.toPath());
+        for (String pattern : PATTERNS) {
+            CompiledNfa nfa = AutomatonFormat.readNfa(buffer);
+            Dfa dfa = AutomatonFormat.readDfa(buffer);
+            Assert.assertEquals(pattern, CompiledNfa.compile(RegexParser.parse(pattern)).getStateCount(),
+                    nfa.getStateCount());
+            Assert.assertEquals(pattern, DfaCompiler.compile(RegexParser.parse(pattern)).getStateCount(),
+                    dfa.getStateCount());
+            Assert.assertEquals(pattern, pattern.equals(PATTERNS[3]), nfa.matches("joe@cs.org"));
+            Assert.assertEquals(pattern, pattern.equals(PATTERNS[3]), new DfaMatcher(dfa).matches("joe@cs.org"));
+        }
+        Assert.assertFalse(buffer.hasRemaining());
+    }
+
+    private static void assertRejected(byte[] bytes, String message) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        try {
+            AutomatonFormat.readNfa(buffer);
+            Assert.fail("Expected " + message);
+        } catch (AutomatonFormatException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+        // a failed read leaves the buffer where it was
+        Assert.assertEquals(0, buffer.position());
+    }
+
+    @Test
+    public void testRejectsBadRecords() {
+        byte[] valid = AutomatonFormat.toBytes(CompiledNfa.compile(RegexParser.parse("(ab|c)*d?")));
+
+        byte[] bytes = valid.clone();
+        bytes[0] ^= 1;
+        assertRejected(bytes, "Not a serialized automaton");
+
+        bytes = valid.clone();
+        bytes[5] = 99;
+        assertRejected(bytes, "Unsupported version");
+
+        bytes = valid.clone();
+        bytes[bytes.length - 3] ^= 0x40;
+        assertRejected(bytes, "Checksum mismatch");
+
+        assertRejected(Arrays.copyOf(valid, valid.length - 1), "Truncated payload");
+        assertRejected(new byte[3], "Truncated header");
+        assertRejected(AutomatonFormat.toBytes(DfaCompiler.compile(RegexParser.parse("a"))), "kind");
+    }
+}
@@ -0,0 +1,129 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CaptureMatcherTest {
+
+    // expected holds the start and end of the whole match, then of each group in turn
+    private static void testGroups(String regex, String text, int... expected) {
+        Match match = new CaptureMatcher(CompiledNfa.compile(RegexParser.parse(regex))).match(text);
+        Assert.assertNotNull(regex + " should match " + text, match);
+        assertGroups(regex, match, expected);
+        Assert.assertEquals(match, new NFASimulator(RegexParser.parse(regex)).matchGroups(text));
+    }
+
+    private static void assertGroups(String regex, Match match, int... expected) {
+        Assert.assertEquals(regex, expected.length / 2 - 1, match.getGroupCount());
+        for (int group = 0; group <= match.getGroupCount(); group++) {
+            Assert.assertEquals(regex + " group " + group, expected[2 * group], match.getStart(group));
+            Assert.assertEquals(regex + " group " + group, expected[2 * group + 1], match.getEnd(group));
+        }
+    }
+
+    @Test
+    public void testGroupCount() {
+        Assert.assertEquals(0, RegexParser.parse("abc").getGroupCount());
+        Assert.assertEquals(3, RegexParser.parse("(a(b))|(c)").getGroupCount());
+        Assert.assertEquals(1, RegexParser.parse("(a){3}").getGroupCount());
+        Assert.assertEquals(1, CompiledNfa.compile(RegexParser.parse("(a)*")).getGroupCount());
+    }
+
+    @Test
+    public void testConcatenation() {
+        testGroups("(a+)(b*)", "aaabb", 0, 5, 0, 3, 3, 5);
+        testGroups("x(\\d+)-(\\d+)", "x555-1234", 0, 9, 1, 4, 5, 9);
+        testGroups("(a)(b)(c)", "abc", 0, 3, 0, 1, 1, 2, 2, 3);
+    }
+
+    @Test
+    public void testGreedy() {
+        testGroups("(a*)(a*)", "aaa", 0, 3, 0, 3, 3, 3);
+        testGroups("(a+)(a+)", "aaaa", 0, 4, 0, 3, 3, 4);
+        testGroups("(a?)(a*)", "aa", 0, 2, 0, 1, 1, 2);
+        testGroups("(a{0,2})(a*)", "aaa", 0, 3, 0, 2, 2, 3);
+        testGroups("(a{1,})(a)", "aaa", 0, 3, 0, 2, 2, 3);
+    }
+
+    @Test
+    public void testAlternationPriority() {
+        testGroups("(a|ab)(c|bcd)(d*)", "abcd", 0, 4, 0, 1, 1, 4, 4, 4);
+        testGroups("(ab|a)(c|bcd)(d*)", "abcd", 0, 4, 0, 2, 2, 3, 3, 4);
+    }
+
+    @Test
+    public void testRepeatedGroups() {
+        // a group inside a loop reports its last iteration
+        testGroups("(ab)*", "ababab", 0, 6, 4, 6);
+        testGroups("((a)b)+", "abab", 0, 4, 2, 4, 2, 3);
+        testGroups("(a){2,3}", "aaa", 0, 3, 2, 3);
+        testGroups("(a|b)*c", "abbac", 0, 5, 3, 4);
+    }
+
+    @Test
+    public void testUnsetGroups() {
+        testGroups("(a)?b", "b", 0, 1, -1, -1);
+        testGroups("(a)|(b)", "b", 0, 1, -1, -1, 0, 1);
+        testGroups("(a)*", "", 0, 0, -1, -1);
+        testGroups("()", "", 0, 0, 0, 0);
+    }
+
+    @Test
+    public void testNoMatch() {
+        CaptureMatcher matcher = new CaptureMatcher(CompiledNfa.compile(RegexParser.parse("(a+)b")));
+        Assert.assertNull(matcher.match("aaa"));
+        Assert.assertNull(matcher.match("aaabb"));
+        Assert.assertNull(matcher.match(""));
+        Assert.assertNotNull(matcher.match("ab"));
+        Assert.assertNull(new NFASimulator(RegexParser.parse("(a+)b")).matchGroups("aaac"));
+    }
+
+    @Test
+    public void testFind() {
+        CaptureMatcher matcher = new CaptureMatcher(CompiledNfa.compile(RegexParser.parse("(\\d+)-(\\d+)")));
+        assertGroups("find", matcher.find("tel 555-1234 x"), 4, 12, 4, 7, 8, 12);
+        Assert.assertNull(matcher.find("tel 555 1234"));
+
+        // leftmost wins first, then priority, not length
+        matcher = new CaptureMatcher(CompiledNfa.compile(RegexParser.parse("(a|ab)")));
+        assertGroups("find", matcher.find("xxab"), 2, 3, 2, 3);
+        matcher = new CaptureMatcher(CompiledNfa.compile(RegexParser.parse("(a*)b")));
+        assertGroups("find", matcher.find("caab"), 1, 4, 1, 3);
+        matcher = new CaptureMatcher(CompiledNfa.compile(RegexParser.parse("(a*)")));
+        assertGroups("find", matcher.find("baa"), 0, 0, 0, 0);
+
+        NFASimulator simulator = new NFASimulator(RegexParser.parse("k=(\\w+)"));
+        Match match = simulator.findGroups("a k=value; b");
+        Assert.assertEquals("value", match.getGroup("a k=value; b", 1));
+        Assert.assertEquals("k=value", match.getGroup("a k=value; b", 0));
+        Assert.assertNull(simulator.findGroups("no key here"));
+    }
+
+    @Test
+    public void testNoBacktrackingBlowup() {
+        // a backtracking matcher takes exponential time on these
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            text.append('a');
+        }
+        CaptureMatcher matcher = new CaptureMatcher(CompiledNfa.compile(RegexParser.parse("((a*)*)b")));
+        Assert.assertNull(matcher.match(text));
+        Assert.assertNull(matcher.find(text));
+        testGroups("(a?){40}(a{40})", text.toString(), 0, 40, 0, 0, 0, 40);
+    }
+
+    @Test
+    public void testMatch() {
+        Match match = new Match(1, 4, new int[]{1, 2, -1, -1});
+        Assert.assertEquals(match, new Match(1, 4, new int[]{1, 2, -1, -1}));
+        Assert.assertFalse(match.equals(new Match(1, 4)));
+        Assert.assertEquals("[1, 4) 1=[1, 2) 2=unset", match.toString());
+        Assert.assertEquals("b", match.getGroup("abcde", 1));
+        Assert.assertNull(match.getGroup("abcde", 2));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testMissingGroup() {
+        new Match(0, 1).getStart(1);
+    }
+}
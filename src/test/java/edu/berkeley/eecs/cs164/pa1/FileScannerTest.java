@@ -0,0 +1,88 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class FileScannerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File write(String contents) throws Exception {
+        File file = folder.newFile("scan" + contents.hashCode() + ".log");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(contents.getBytes("ISO-8859-1"));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static long[] toArray(List<Long> values) {
+        long[] result = new long[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.get(i);
+        }
+        return result;
+    }
+
+    @Test
+    public void testLineEndings() throws Exception {
+        File file = write("ab\r\nabab\nx\n\r\nab\rab\nab");
+        FileScanner scanner = new FileScanner(CompiledNfa.compile(RegexParser.parse("(ab)*")));
+        FileScanner.Result result = scanner.scan(file.toPath());
+
+        // "ab\r" and "ab\rab" keep their lone carriage returns, the empty line matches
+        Assert.assertEquals(6, result.getLineCount());
+        Assert.assertArrayEquals(new long[]{0, 4, 11, 19}, result.getMatchOffsets());
+    }
+
+    @Test
+    public void testChunkedScanMatchesLineByLine() throws Exception {
+        Random random = new Random(164);
+        StringBuilder contents = new StringBuilder();
+        List<Long> expected = new ArrayList<Long>();
+        NFASimulator simulator = new NFASimulator(RegexParser.parse("ERROR (a|b)+"));
+        for (int n = 0; n < 2000; n++) {
+            StringBuilder line = new StringBuilder(random.nextBoolean() ? "ERROR " : "INFO ");
+            for (int k = random.nextInt(40); k > 0; k--) {
+                line.append(random.nextInt(20) == 0 ? 'c' : random.nextBoolean() ? 'a' : 'b');
+            }
+            if (simulator.matches(line.toString())) {
+                expected.add((long) contents.length());
+            }
+            contents.append(line).append('\n');
+        }
+
+        File file = write(contents.toString());
+        CompiledNfa nfa = CompiledNfa.compile(RegexParser.parse("ERROR (a|b)+"));
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int chunkSize : new int[]{1, 7, 100, 4096, FileScanner.DEFAULT_CHUNK_SIZE}) {
+                FileScanner.Result result = new FileScanner(nfa, chunkSize, pool).scan(file.toPath());
+                Assert.assertEquals(2000, result.getLineCount());
+                Assert.assertEquals(expected.size(), result.getMatchCount());
+                Assert.assertArrayEquals(toArray(expected), result.getMatchOffsets());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testEmptyFile() throws Exception {
+        FileScanner.Result result = new FileScanner(CompiledNfa.compile(RegexParser.parse("a*")))
+                .scan(write("").toPath());
+        Assert.assertEquals(0, result.getLineCount());
+        Assert.assertEquals(0, result.getMatchCount());
+    }
+}
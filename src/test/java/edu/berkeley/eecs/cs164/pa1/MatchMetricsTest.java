@@ -0,0 +1,141 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class MatchMetricsTest {
+    private static final String PATTERN = "(ab|c)*d";
+
+    private static MatchMetrics.Snapshot run(NFASimulator.Mode mode, String... texts) {
+        NFASimulator simulator = new NFASimulator(RegexParser.parse(PATTERN), mode);
+        MatchMetrics metrics = new MatchMetrics();
+        simulator.setMetrics(metrics);
+        for (String text : texts) {
+            simulator.matches(text);
+        }
+        return metrics.snapshot();
+    }
+
+    @Test
+    public void testNfa() {
+        MatchMetrics.Snapshot snapshot = run(NFASimulator.Mode.NFA, "ababd", "abxd", "zzz");
+        Assert.assertEquals(3, snapshot.getMatchCount());
+        Assert.assertEquals(1, snapshot.getAcceptedCount());
+        // "zzz" has no "d", so it never gets to the engine
+        Assert.assertEquals(1, snapshot.getPrefilterRejectCount());
+        Assert.assertEquals(5 + 3, snapshot.getCharsScanned());
+        Assert.assertEquals(1, snapshot.getRejectOffsets().getCount());
+        Assert.assertEquals(1, snapshot.getRejectOffsets().getCount(Histogram.bucketOf(2)));
+        Assert.assertEquals(2, snapshot.getPeakActiveStates().getCount());
+        Assert.assertTrue(snapshot.getAverageActiveStates() > 1);
+        Assert.assertTrue(snapshot.getClosureIterations() > 0);
+        Assert.assertEquals(0, snapshot.getCacheHits() + snapshot.getCacheMisses());
+    }
+
+    @Test
+    public void testClosuresAreCountedOnce() {
+        NFASimulator simulator = new NFASimulator(RegexParser.parse(PATTERN));
+        MatchMetrics metrics = new MatchMetrics();
+        simulator.setMetrics(metrics);
+        simulator.matches("ababcd");
+        long cold = metrics.snapshot().getClosureIterations();
+        simulator.matches("ababcd");
+        Assert.assertEquals(cold, metrics.snapshot().getClosureIterations());
+    }
+
+    @Test
+    public void testLazyDfa() {
+        MatchMetrics.Snapshot snapshot = run(NFASimulator.Mode.LAZY_DFA, "ababd", "ababd", "abxd");
+        Assert.assertEquals(3, snapshot.getMatchCount());
+        Assert.assertEquals(2, snapshot.getAcceptedCount());
+        Assert.assertEquals(5 + 5 + 3, snapshot.getCharsScanned());
+        Assert.assertEquals(snapshot.getCharsScanned(), snapshot.getCacheHits() + snapshot.getCacheMisses());
+        // the second text only follows transitions the first one cached
+        Assert.assertTrue(snapshot.getCacheHitRate() > 0.5);
+        Assert.assertEquals(1, snapshot.getRejectOffsets().getCount(Histogram.bucketOf(2)));
+        Assert.assertTrue(snapshot.getClosureIterations() > 0);
+    }
+
+    @Test
+    public void testOtherModes() {
+        for (NFASimulator.Mode mode : new NFASimulator.Mode[]{NFASimulator.Mode.DFA, NFASimulator.Mode.BIT_PARALLEL}) {
+            MatchMetrics.Snapshot snapshot = run(mode, "ababd", "abxd", "zzz");
+            Assert.assertEquals(3, snapshot.getMatchCount());
+            Assert.assertEquals(1, snapshot.getAcceptedCount());
+            Assert.assertEquals(1, snapshot.getPrefilterRejectCount());
+            Assert.assertEquals(5 + 3, snapshot.getCharsScanned());
+            Assert.assertEquals(1, snapshot.getRejectOffsets().getCount());
+            Assert.assertEquals(1, snapshot.getRejectOffsets().getCount(Histogram.bucketOf(2)));
+        }
+    }
+
+    @Test
+    public void testScanWithoutReject() {
+        // reading the whole text without accepting it is not a reject
+        Automaton nfa = RegexParser.parse("ab*c");
+        Assert.assertEquals(3, new DfaMatcher(nfa).scan("abb"));
+        Assert.assertEquals(3, new BitParallelMatcher(nfa).scan("abb"));
+        Assert.assertEquals(-1, new DfaMatcher(nfa).scan("abbc"));
+        Assert.assertEquals(-1, new BitParallelMatcher(nfa).scan("abbc"));
+        Assert.assertEquals(2, new DfaMatcher(nfa).scan("acc"));
+        Assert.assertEquals(2, new BitParallelMatcher(nfa).scan("acc"));
+    }
+
+    @Test
+    public void testSharedBetweenThreads() throws Exception {
+        final MatchMetrics metrics = new MatchMetrics();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> results = new ArrayList<Future<?>>();
+            for (int t = 0; t < 4; t++) {
+                results.add(pool.submit(new Runnable() {
+                    public void run() {
+                        NFASimulator simulator = new NFASimulator(RegexParser.parse(PATTERN));
+                        simulator.setMetrics(metrics);
+                        for (int i = 0; i < 1000; i++) {
+                            simulator.matches(i % 2 == 0 ? "abcd" : "abd");
+                        }
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        MatchMetrics.Snapshot snapshot = metrics.snapshot();
+        Assert.assertEquals(4000, snapshot.getMatchCount());
+        Assert.assertEquals(4000, snapshot.getAcceptedCount());
+        Assert.assertEquals(2000 * 4 + 2000 * 3, snapshot.getCharsScanned());
+    }
+
+    @Test
+    public void testHistogram() {
+        Assert.assertEquals(0, Histogram.bucketOf(0));
+        Assert.assertEquals(1, Histogram.bucketOf(1));
+        Assert.assertEquals(3, Histogram.bucketOf(7));
+        Assert.assertEquals(4, Histogram.bucketOf(8));
+        Assert.assertEquals(Histogram.BUCKETS - 1, Histogram.bucketOf(Long.MAX_VALUE));
+        Assert.assertEquals(8, Histogram.lowerBound(4));
+
+        Histogram histogram = new Histogram();
+        Assert.assertEquals(0, histogram.snapshot().getQuantileLowerBound(0.5));
+        for (int value = 0; value < 100; value++) {
+            histogram.record(value);
+        }
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(100, snapshot.getCount());
+        Assert.assertEquals(4950, snapshot.getSum());
+        Assert.assertEquals(49.5, snapshot.getMean(), 1e-9);
+        Assert.assertEquals(32, snapshot.getQuantileLowerBound(0.5));
+        Assert.assertEquals(64, snapshot.getQuantileLowerBound(1));
+        Assert.assertTrue(snapshot.toString().startsWith("{>=0: 1, >=1: 1, >=2: 2, "));
+    }
+}
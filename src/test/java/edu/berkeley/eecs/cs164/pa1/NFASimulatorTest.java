@@ -3,6 +3,18 @@ package edu.berkeley.eecs.cs164.pa1;
 import junit.framework.Assert;
 import org.junit.Test;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 public class NFASimulatorTest {
     private static void testCase(String regex, String text) {
         testCase(regex, text, true);
@@ -17,6 +29,19 @@ public class NFASimulatorTest {
         }
 
         Assert.assertEquals(isMatch, new NFASimulator(nfa).matches(text));
+        Assert.assertEquals(isMatch, new NFASimulator(nfa, NFASimulator.Mode.LAZY_DFA).matches(text));
+        Assert.assertEquals(isMatch, new NFASimulator(nfa, NFASimulator.Mode.DFA).matches(text));
+        Assert.assertEquals(isMatch, CompiledNfa.compile(nfa).matches(text));
+        Assert.assertEquals(isMatch, new NFASimulator(nfa, NFASimulator.Mode.AUTO).matches(text));
+        Assert.assertEquals(isMatch, new NFASimulator(AutomatonOptimizer.optimize(nfa)).matches(text));
+    }
+
+    private static String repeat(String s, int times) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            builder.append(s);
+        }
+        return builder.toString();
     }
 
     @Test
@@ -64,6 +89,114 @@ public class NFASimulatorTest {
         testCase("\\\\", "\\");
     }
 
+    @Test
+    public void testCharacterClass() throws Exception {
+        testCase("[a-z]", "q");
+        testCase("[a-z]", "Q", false);
+        testCase("[a-z]", "", false);
+        testCase("[a-cx-z0]+", "abzx0");
+        testCase("[a-cx-z0]+", "abd", false);
+        testCase("[^a-z]", "Q");
+        testCase("[^a-z]", "q", false);
+        testCase("[^a-z]", "\u00e9");
+        testCase("[]a]*", "]a]");
+        testCase("[a-]+", "a-a");
+        testCase("[\\]\\-]+", "]-");
+        testCase("[\\d_]+", "12_3");
+        testCase("[\\d_]+", "12a", false);
+        testCase("a.c", "abc");
+        testCase("a.c", "a\u4e2dc");
+        testCase("a.c", "a\nc", false);
+        testCase("\\.", ".");
+        testCase("\\.", "a", false);
+        testCase("\\d+", "2017");
+        testCase("\\d+", "20l7", false);
+        testCase("\\w+\\s\\w+", "hello_1 world");
+        testCase("\\w+\\s\\w+", "hello-1 world", false);
+        testCase("\\D\\W\\S", "a-b");
+        testCase("\\D\\W\\S", "1-b", false);
+        testCase("([a-z]|[0-9])*x", "a1b2x");
+    }
+
+    @Test
+    public void testCharacterClassTransitions() throws Exception {
+        // a range is a single transition, not one per character
+        Automaton nfa = RegexParser.parse("[a-z]");
+        Assert.assertEquals(1, countClassEdges(nfa));
+        CompiledNfa compiled = CompiledNfa.compile(nfa);
+        Assert.assertEquals(1, compiled.getClassEdgeCount());
+        Assert.assertEquals(0, compiled.getCharEdgeCount());
+
+        CharClass letters = CharClass.of('m', 'z', 'a', 'n');
+        Assert.assertEquals(CharClass.range('a', 'z'), letters);
+        Assert.assertTrue(letters.contains('a'));
+        Assert.assertFalse(letters.contains('{'));
+        Assert.assertTrue(letters.negate().contains('\uffff'));
+        Assert.assertFalse(letters.negate().negate().contains('\u0161'));
+        Assert.assertEquals("[0-9A-Z_a-z]", CharClass.WORD.toString());
+    }
+
+    private static int countClassEdges(Automaton nfa) {
+        int edges = 0;
+        for (AutomatonState state : nfa.getReachableStates()) {
+            edges += state.getClassTransitions().size();
+        }
+        return edges;
+    }
+
+    @Test
+    public void testBoundedRepetition() throws Exception {
+        testCase("a{3}", "aaa");
+        testCase("a{3}", "aa", false);
+        testCase("a{3}", "aaaa", false);
+        testCase("a{2,}", "a", false);
+        testCase("a{2,}", "aa");
+        testCase("a{2,}", "aaaaaaa");
+        testCase("a{2,4}", "a", false);
+        testCase("a{2,4}", "aaa");
+        testCase("a{2,4}", "aaaa");
+        testCase("a{2,4}", "aaaaa", false);
+        testCase("a{0}", "");
+        testCase("a{0}", "a", false);
+        testCase("a{0,}b", "b");
+        testCase("(ab|c){1,2}", "abc");
+        testCase("(ab|c){1,2}", "cab");
+        testCase("(ab|c){1,2}", "abcc", false);
+        testCase("(a*){2,3}b", "aaaab");
+        testCase("[0-9]{3}-[0-9]{4}", "555-1234");
+        testCase("[0-9]{3}-[0-9]{4}", "55-51234", false);
+        testCase("a{3,500}", repeat("a", 500));
+        testCase("a{3,500}", repeat("a", 501), false);
+        // braces that don't form a repetition are plain characters
+        testCase("a{b", "a{b");
+        testCase("a{,2}", "a{,2}");
+        testCase("a{2,x}", "a{2,x}");
+        testCase("a\\{2}", "a{2}");
+    }
+
+    @Test
+    public void testBoundedRepetitionStepCost() throws Exception {
+        // only the clone being matched and the way out are live, however large m is
+        final int[] largest = new int[1];
+        NFASimulator simulator = new NFASimulator(RegexParser.parse("a{3,500}"));
+        simulator.setListener(new MatchListener() {
+            public void matchStarted(String text, int closureSize) {
+            }
+
+            public void stepped(int offset, int reachableSize, int closureSize) {
+                largest[0] = Math.max(largest[0], closureSize);
+            }
+
+            public void rejected(int offset) {
+            }
+
+            public void matchFinished(boolean accepted, int steps) {
+            }
+        });
+        Assert.assertTrue(simulator.matches(repeat("a", 400)));
+        Assert.assertTrue("closure size " + largest[0], largest[0] <= 8);
+    }
+
     @Test
     public void testConcatenation() throws Exception {
         testCase("abc", "abc");
@@ -120,4 +253,552 @@ public class NFASimulatorTest {
         testCase("", "");
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testLazyDfaCacheFlush() throws Exception {
+        String regex = "";
+        String input = "";
+        for (int n = 0; n < 20; n++) {
+            regex += "a?";
+            input += "a";
+        }
+        regex += input;
+
+        // a budget this small can only ever hold a single state, so every step flushes
+        LazyDfa dfa = new LazyDfa(RegexParser.parse(regex), 1);
+        for (int n = 0; n < 3; n++) {
+            Assert.assertTrue(dfa.matches(input + input));
+            Assert.assertTrue(dfa.matches(input));
+            Assert.assertFalse(dfa.matches(input + input + "a"));
+        }
+        Assert.assertTrue(dfa.getFlushCount() > 0);
+        Assert.assertEquals(1, dfa.getCachedStateCount());
+
+        // with the default budget the same inputs never need a flush
+        dfa = new LazyDfa(RegexParser.parse(regex), LazyDfa.DEFAULT_MAX_CACHE_BYTES);
+        Assert.assertTrue(dfa.matches(input + input));
+        Assert.assertFalse(dfa.matches(input + input + "a"));
+        Assert.assertEquals(0, dfa.getFlushCount());
+    }
+
+    @Test
+    public void testDfaMinimization() throws Exception {
+        // (a|b)*abb is the textbook example: the subset construction gives 5 live states
+        // plus the dead one, minimization merges two of the live ones
+        Dfa dfa = DfaCompiler.compile(RegexParser.parse("(a|b)*abb"));
+        Assert.assertEquals(6, dfa.getUnminimizedStateCount());
+        Assert.assertEquals(5, dfa.getStateCount());
+
+        // every way of writing a* ends up as one live state plus the dead one
+        Assert.assertEquals(2, DfaCompiler.compile(RegexParser.parse("a*")).getStateCount());
+        Assert.assertEquals(2, DfaCompiler.compile(RegexParser.parse("(a*)*a*")).getStateCount());
+        Assert.assertEquals(2, DfaCompiler.compile(RegexParser.parse("(a|a)*")).getStateCount());
+
+        DfaMatcher matcher = new DfaMatcher(dfa);
+        Assert.assertTrue(matcher.matches("abababb"));
+        Assert.assertFalse(matcher.matches("ababab"));
+        Assert.assertFalse(matcher.matches("abb\u00e9"));
+    }
+
+    @Test
+    public void testAlphabetPartition() throws Exception {
+        // a, b and everything else
+        Assert.assertEquals(3, AlphabetPartition.of(RegexParser.parse("(a|b)*abb")).getClassCount());
+        // characters no transition tells apart share a class even if they are far apart
+        AlphabetPartition split = AlphabetPartition.of(RegexParser.parse("[a-cx-z]"));
+        Assert.assertEquals(2, split.getClassCount());
+        Assert.assertEquals(split.classOf('a'), split.classOf('z'));
+        Assert.assertEquals(0, split.classOf('\0'));
+        Assert.assertEquals(split.classOf('d'), split.classOf('\uffff'));
+        Assert.assertEquals('a', split.getRepresentative(split.classOf('y')));
+
+        AlphabetPartition overlapping = AlphabetPartition.of(RegexParser.parse("[a-m]x|[h-z]y|k"));
+        // [a-g], [h-m] less k, k, [n-z] less x and y, x, y and the rest
+        Assert.assertEquals(7, overlapping.getClassCount());
+
+        // the table has one column per class, and the DFA handles any character
+        Dfa dfa = DfaCompiler.compile(RegexParser.parse("[a-z]+@[a-z]+\u00e9"));
+        Assert.assertEquals(4, dfa.getAlphabet().getClassCount());
+        DfaMatcher matcher = new DfaMatcher(dfa);
+        Assert.assertTrue(matcher.matches("joe@cs\u00e9"));
+        Assert.assertFalse(matcher.matches("joe@cse"));
+        Assert.assertTrue(new DfaMatcher(RegexParser.parse("[^a]\\W.")).matches("\u4e2d\u00e9\uffff"));
+    }
+
+    @Test
+    public void testAlphabetPartitionAgainstBruteForce() throws Exception {
+        // labels with ends on both sides of page boundaries, checked against the set of
+        // labels holding each character
+        Random random = new Random(164);
+        for (int round = 0; round < 20; round++) {
+            AutomatonState start = new AutomatonState();
+            List<CharClass> labels = new ArrayList<CharClass>();
+            for (int n = random.nextInt(12); n >= 0; n--) {
+                char lo = (char) (random.nextBoolean() ? random.nextInt(1024) : random.nextInt(65536));
+                char hi = (char) Math.min(Character.MAX_VALUE, lo + random.nextInt(600));
+                labels.add(CharClass.range(lo, hi));
+                start.addTransition(labels.get(labels.size() - 1), new AutomatonState());
+            }
+            char literal = (char) random.nextInt(65536);
+            labels.add(CharClass.range(literal, literal));
+            start.addTransition(literal, new AutomatonState());
+
+            AlphabetPartition partition = AlphabetPartition.of(start);
+            HashMap<BitSet, Integer> classes = new HashMap<BitSet, Integer>();
+            for (int ch = 0; ch <= Character.MAX_VALUE; ch++) {
+                BitSet holding = new BitSet();
+                for (int l = 0; l < labels.size(); l++) {
+                    holding.set(l, labels.get(l).contains((char) ch));
+                }
+                int cls = partition.classOf((char) ch);
+                Integer known = classes.get(holding);
+                if (known == null) {
+                    classes.put(holding, cls);
+                    Assert.assertEquals(ch, partition.getRepresentative(cls));
+                } else {
+                    Assert.assertEquals("character " + ch, (int) known, cls);
+                }
+            }
+            Assert.assertEquals(classes.size(), partition.getClassCount());
+        }
+    }
+
+    @Test
+    public void testListener() throws Exception {
+        final StringBuilder events = new StringBuilder();
+        NFASimulator simulator = new NFASimulator(RegexParser.parse("ab*c"));
+        simulator.setListener(new MatchListener() {
+            public void matchStarted(String text, int closureSize) {
+                events.append("start ");
+            }
+
+            public void stepped(int offset, int reachableSize, int closureSize) {
+                events.append("step").append(offset).append(' ');
+            }
+
+            public void rejected(int offset) {
+                events.append("reject").append(offset).append(' ');
+            }
+
+            public void matchFinished(boolean accepted, int steps) {
+                events.append(accepted).append(steps);
+            }
+        });
+
+        Assert.assertTrue(simulator.matches("abc"));
+        Assert.assertEquals("start step0 step1 step2 true3", events.toString());
+
+        events.setLength(0);
+        Assert.assertFalse(simulator.matches("acb"));
+        Assert.assertEquals("start step0 step1 reject2 false2", events.toString());
+
+        events.setLength(0);
+        simulator.setListener(null);
+        Assert.assertTrue(simulator.matches("abbc"));
+        Assert.assertEquals("", events.toString());
+    }
+
+    @Test
+    public void testCompiledNfaLayout() throws Exception {
+        AutomatonState start = new AutomatonState();
+        AutomatonState middle = new AutomatonState();
+        AutomatonState out = new AutomatonState();
+        AutomatonState unreachable = new AutomatonState();
+        start.addTransition('b', middle);
+        start.addTransition('a', middle);
+        start.addEpsilonTransition(out);
+        middle.addTransition('c', out);
+        unreachable.addTransition('d', out);
+
+        CompiledNfa compiled = CompiledNfa.compile(new Automaton(start, out));
+        Assert.assertEquals(3, compiled.getStateCount());
+        Assert.assertEquals(3, compiled.getCharEdgeCount());
+        Assert.assertEquals(1, compiled.getEpsilonEdgeCount());
+        Assert.assertEquals(0, compiled.getStartState());
+        // character edges of a state are sorted by label
+        Assert.assertEquals('a', compiled.getCharLabels()[0]);
+        Assert.assertEquals('b', compiled.getCharLabels()[1]);
+
+        Assert.assertTrue(compiled.matches(""));
+        Assert.assertTrue(compiled.matches("ac"));
+        Assert.assertTrue(compiled.matches("bc"));
+        Assert.assertFalse(compiled.matches("dc"));
+        Assert.assertFalse(compiled.matches("a"));
+    }
+
+    @Test
+    public void testThreadMatchersDoNotKeepNfaAlive() throws Exception {
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            final List<WeakReference<CompiledNfa>> compiled = new ArrayList<WeakReference<CompiledNfa>>();
+            pool.submit(new Runnable() {
+                public void run() {
+                    CompiledNfa nfa = CompiledNfa.compile(RegexParser.parse("(ab|c)*d"));
+                    Assert.assertTrue(nfa.matches("abcd"));
+                    Assert.assertNotNull(nfa.getThreadCaptureMatcher().match("abcd"));
+                    compiled.add(new WeakReference<CompiledNfa>(nfa));
+                }
+            }).get();
+
+            // the pool thread is still alive and holds its matchers
+            for (int i = 0; i < 50 && compiled.get(0).get() != null; i++) {
+                System.gc();
+                Thread.sleep(10);
+            }
+            Assert.assertNull(compiled.get(0).get());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testPikeVMReuse() throws Exception {
+        CompiledNfa nfa = CompiledNfa.compile(RegexParser.parse("a(bc)*d|(ab)+"));
+        PikeVM matcher = nfa.getThreadMatcher();
+        Assert.assertSame(matcher, nfa.getThreadMatcher());
+
+        // a rejected match must not leave states behind for the next one
+        for (int n = 0; n < 3; n++) {
+            Assert.assertFalse(matcher.matches("abcb"));
+            Assert.assertTrue(matcher.matches("abcbcd"));
+            Assert.assertFalse(matcher.matches("abcbcdd"));
+            Assert.assertTrue(matcher.matches("ababab"));
+            Assert.assertFalse(matcher.matches(""));
+        }
+    }
+
+    @Test
+    public void testFind() throws Exception {
+        NFASimulator simulator = new NFASimulator(RegexParser.parse("ab+"));
+        Assert.assertEquals(new Match(2, 4), simulator.find("xxabbbx"));
+        Assert.assertEquals(new Match(2, 6), simulator.findLongest("xxabbbx"));
+        Assert.assertNull(simulator.find("xxaxbx"));
+        Assert.assertNull(simulator.findLongest(""));
+
+        // the earliest ending match wins, even if another one started further left
+        simulator = new NFASimulator(RegexParser.parse("abcd|c"));
+        Assert.assertEquals(new Match(2, 3), simulator.find("abcd"));
+        Assert.assertEquals(new Match(0, 4), simulator.findLongest("abcd"));
+
+        // a pattern accepting the empty string matches before the first character
+        simulator = new NFASimulator(RegexParser.parse("a*"));
+        Assert.assertEquals(new Match(0, 0), simulator.find("baaa"));
+        Assert.assertEquals(new Match(0, 0), simulator.findLongest("baaa"));
+        Assert.assertEquals(new Match(0, 3), simulator.findLongest("aaab"));
+
+        // a later, longer path from an earlier start replaces a shorter match
+        simulator = new NFASimulator(RegexParser.parse("bc|abcde"));
+        Assert.assertEquals(new Match(2, 4), simulator.find("xabcdex"));
+        Assert.assertEquals(new Match(1, 6), simulator.findLongest("xabcdex"));
+        Assert.assertEquals(new Match(2, 4), simulator.findLongest("xabcdx"));
+    }
+
+    @Test
+    public void testNestedClosures() throws Exception {
+        String nested = repeat("(", 40) + "a*" + repeat(")*", 40);
+        testCase(nested, "");
+        testCase(nested, repeat("a", 200));
+        testCase(nested + "b", repeat("a", 200) + "b");
+        testCase(nested + "b", repeat("a", 200) + "c", false);
+
+        // every state of ((a*)*)* reaches every other one through epsilon cycles
+        Automaton nfa = RegexParser.parse("((a*)*)*");
+        HashSet<AutomatonState> start = new HashSet<AutomatonState>();
+        start.add(nfa.getStart());
+        Assert.assertEquals(nfa.getStateCount() - 1, NFASimulator.getEpsilonClosure(start).size());
+        Assert.assertEquals(1, start.size());
+
+        CompiledNfa compiled = CompiledNfa.compile(nfa);
+        Assert.assertTrue(compiled.hasClosureTable());
+        int[] offsets = compiled.getClosureOffsets();
+        // only the start state and the target of 'a' have closures stored
+        int stored = 0;
+        for (int s = 0; s < compiled.getStateCount(); s++) {
+            if (offsets[s + 1] > offsets[s]) {
+                stored++;
+            }
+        }
+        Assert.assertEquals(2, stored);
+    }
+
+    @Test
+    public void testGlushkov() throws Exception {
+        // one position per occurrence of a character: a, b, b and c
+        GlushkovAutomaton positions = GlushkovAutomaton.of(RegexParser.parse("(a|b)*bc"));
+        Assert.assertEquals(4, positions.getPositionCount());
+        Assert.assertFalse(positions.isLast(0));
+        Assert.assertEquals(3, positions.getFollow(0).length);
+        int lastCount = 0;
+        for (int p = 1; p <= 4; p++) {
+            if (positions.isLast(p)) {
+                lastCount++;
+                Assert.assertTrue(positions.accepts(p, 'c'));
+                Assert.assertEquals(0, positions.getFollow(p).length);
+            }
+        }
+        Assert.assertEquals(1, lastCount);
+        Assert.assertTrue(GlushkovAutomaton.of(RegexParser.parse("a*")).isLast(0));
+
+        // the exact limit: 63 positions fit, 64 don't
+        String fits = repeat("a", BitParallelMatcher.MAX_POSITIONS);
+        Assert.assertEquals(NFASimulator.Mode.BIT_PARALLEL, new NFASimulator(RegexParser.parse(fits), NFASimulator.Mode.AUTO).getMode());
+        Assert.assertEquals(NFASimulator.Mode.LAZY_DFA, new NFASimulator(RegexParser.parse(fits + "a"), NFASimulator.Mode.AUTO).getMode());
+        Assert.assertEquals(4, GlushkovAutomaton.countPositions(RegexParser.parse("(a|b)*bc"), 10));
+        Assert.assertEquals(11, GlushkovAutomaton.countPositions(RegexParser.parse(fits), 10));
+        String shorter = fits.substring(1);
+        BitParallelMatcher matcher = new BitParallelMatcher(RegexParser.parse(shorter + "|b*"));
+        Assert.assertTrue(matcher.matches(shorter));
+        Assert.assertTrue(matcher.matches(""));
+        Assert.assertTrue(matcher.matches("bbb"));
+        Assert.assertFalse(matcher.matches(fits));
+        Assert.assertFalse(matcher.matches(shorter.substring(1)));
+
+        matcher = new BitParallelMatcher(RegexParser.parse("[a-z]+@[^@]+\\.(com|org)"));
+        Assert.assertTrue(matcher.matches("joe@cs.berkeley.org"));
+        Assert.assertFalse(matcher.matches("joe@cs@berkeley.org"));
+        Assert.assertFalse(matcher.matches("joe@cs.berkeley.net"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBitParallelTooLarge() throws Exception {
+        new NFASimulator(RegexParser.parse("a{64}"), NFASimulator.Mode.BIT_PARALLEL);
+    }
+
+    @Test
+    public void testPrefilter() throws Exception {
+        Prefilter prefilter = Prefilter.of(RegexParser.parse("ERROR(x|y)*"));
+        Assert.assertEquals("ERROR", prefilter.getPrefix());
+        Assert.assertEquals("", prefilter.getRequiredLiteral());
+        Assert.assertTrue(prefilter.mayMatch("ERRORxy"));
+        Assert.assertFalse(prefilter.mayMatch("WARNxy"));
+
+        // a shared start is still a prefix; the literal after the loop is required somewhere
+        prefilter = Prefilter.of(RegexParser.parse("(ERROR|ERRNO)[0-9]*: disk"));
+        Assert.assertEquals("ERR", prefilter.getPrefix());
+        Assert.assertEquals(": disk", prefilter.getRequiredLiteral());
+        prefilter = Prefilter.of(RegexParser.parse("(a|b)*FATAL(x|y)*"));
+        Assert.assertEquals("", prefilter.getPrefix());
+        Assert.assertEquals("FATAL", prefilter.getRequiredLiteral());
+        Assert.assertFalse(prefilter.mayMatch("ababFATA"));
+
+        // nothing is required when a literal can be skipped or the empty string is accepted
+        Assert.assertTrue(Prefilter.of(RegexParser.parse("(a|b)*")).isEmpty());
+        Assert.assertTrue(Prefilter.of(RegexParser.parse("x?y?")).isEmpty());
+        Assert.assertTrue(Prefilter.of(RegexParser.parse("")).isEmpty());
+        Assert.assertEquals("b", Prefilter.of(RegexParser.parse("a*b")).getRequiredLiteral());
+        Assert.assertEquals("ab", Prefilter.of(AutomatonOptimizer.optimize(RegexParser.parse("(ab)+"))).getPrefix());
+        // a detour around part of the path makes only the transitions outside it required
+        Assert.assertEquals("WARN", Prefilter.of(RegexParser.parse("[0-9]+(x|yz)*WARN(a|bc)?k")).getRequiredLiteral());
+        Assert.assertEquals("ok", Prefilter.of(RegexParser.parse("[a-z](no|n?)ok")).getRequiredLiteral());
+
+        // rejecting early doesn't change any answers
+        testCase("(a|b)*FATAL(x|y)*", "abFATALxy");
+        testCase("(a|b)*FATAL(x|y)*", "abFATxy", false);
+        testCase("ERR(OR|NO)", "ERRNO");
+        testCase("ERR(OR|NO)", "ERRN", false);
+
+        // searching skips to where the prefix occurs
+        NFASimulator simulator = new NFASimulator(RegexParser.parse("ERR(OR|NO)"));
+        Assert.assertEquals(new Match(9, 14), simulator.find("ERR ERRO ERRNO"));
+        Assert.assertNull(simulator.find("ERR ERRO ERRN"));
+        simulator = new NFASimulator(RegexParser.parse("a*FATAL"));
+        Assert.assertEquals(new Match(2, 9), simulator.findLongest("bbaaFATAL"));
+        Assert.assertNull(simulator.findLongest("bbaaFATA"));
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+        Automaton nfa = RegexParser.parse("(ab|c)*d?");
+        NFASimulator simulator = new NFASimulator(nfa);
+        Random random = new Random(164);
+        List<String> inputs = new ArrayList<String>();
+        BitSet expected = new BitSet();
+        for (int i = 0; i < 1000; i++) {
+            StringBuilder input = new StringBuilder();
+            for (int n = random.nextInt(12); n > 0; n--) {
+                input.append("abcd".charAt(random.nextInt(4)));
+            }
+            inputs.add(input.toString());
+            if (simulator.matches(input.toString())) {
+                expected.set(i);
+            }
+        }
+
+        BatchMatcher batch = new BatchMatcher(nfa);
+        Assert.assertEquals(expected, batch.matchAll(inputs));
+        Assert.assertEquals(expected, batch.matchAll(inputs.toArray(new String[inputs.size()])));
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            for (int parts : new int[]{1, 3, 4, 16, 2000}) {
+                Assert.assertEquals(expected, batch.matchAllParallel(inputs, pool, parts));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testOptimizer() throws Exception {
+        Automaton nfa = RegexParser.parse("a(bc)*d");
+        Automaton optimized = AutomatonOptimizer.optimize(nfa);
+        // start, after a, after b, after d, out
+        Assert.assertEquals(5, optimized.getStateCount());
+        Assert.assertEquals(5, optimized.getEdgeCount());
+        Assert.assertTrue(nfa.getStateCount() > 3 * optimized.getStateCount());
+
+        // (a|a)* collapses to a single looping state besides the out state
+        optimized = AutomatonOptimizer.optimize(RegexParser.parse("((a|a)*)*"));
+        Assert.assertEquals(2, optimized.getStateCount());
+        Assert.assertEquals(2, optimized.getEdgeCount());
+
+        // the original is left untouched and still matches
+        Assert.assertTrue(new NFASimulator(nfa).matches("abcbcd"));
+
+        // only the language is kept
+        Assert.assertEquals(1, nfa.getGroupCount());
+        Assert.assertEquals(0, AutomatonOptimizer.optimize(nfa).getGroupCount());
+    }
+
+    @Test
+    public void testStateIdentity() throws Exception {
+        AutomatonState a = new AutomatonState();
+        AutomatonState b = new AutomatonState();
+        HashSet<AutomatonState> set = new HashSet<AutomatonState>();
+        set.add(a);
+        set.add(b);
+
+        // states with the same transitions are still different, and adding transitions
+        // doesn't lose a state already in a set
+        Assert.assertFalse(a.equals(b));
+        a.addTransition('x', b);
+        a.addEpsilonTransition(a);
+        Assert.assertTrue(set.contains(a));
+        Assert.assertEquals(2, set.size());
+
+        // ids stay unique when states are created from many threads at once
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<AutomatonState>>> results = new ArrayList<Future<List<AutomatonState>>>();
+            for (int t = 0; t < 8; t++) {
+                results.add(pool.submit(new Callable<List<AutomatonState>>() {
+                    public List<AutomatonState> call() {
+                        return RegexParser.parse("(ab|c)*d{5}").getReachableStates();
+                    }
+                }));
+            }
+            HashSet<Integer> ids = new HashSet<Integer>();
+            int states = 0;
+            for (Future<List<AutomatonState>> result : results) {
+                for (AutomatonState state : result.get()) {
+                    ids.add(state.getMyId());
+                    states++;
+                }
+            }
+            Assert.assertEquals(states, ids.size());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testDfaStateLimit() {
+        // the last thirteen characters have to be remembered, which takes 2^13 dfa states
+        Automaton nfa = RegexParser.parse("(a|b)*a(a|b){12}");
+        try {
+            DfaCompiler.compile(nfa, 1000);
+            Assert.fail("Expected the dfa state limit to be hit");
+        } catch (ResourceLimitException e) {
+            // expected
+        }
+
+        NFASimulator simulator = new NFASimulator(nfa, NFASimulator.Mode.DFA,
+                LazyDfa.DEFAULT_MAX_CACHE_BYTES, 1000);
+        Assert.assertEquals(NFASimulator.Mode.NFA, simulator.getMode());
+        Assert.assertTrue(simulator.matches("bbabbbbbbbbbbbb"));
+        Assert.assertFalse(simulator.matches("bbbabbbbbbbbbbb"));
+        Assert.assertEquals(NFASimulator.Mode.DFA, new NFASimulator(nfa, NFASimulator.Mode.DFA).getMode());
+    }
+
+    @Test
+    public void testDfaSubsetLimit() {
+        // every dfa state after the start holds the states of all the a? still to come,
+        // so a couple of hundred dfa states stand for tens of thousands of nfa states
+        Automaton nfa = RegexParser.parse("(a?){200}");
+        Assert.assertEquals(202, DfaCompiler.compile(nfa).getStateCount());
+        try {
+            DfaCompiler.compile(nfa, DfaCompiler.DEFAULT_MAX_STATES, 10000);
+            Assert.fail("Expected the subset entry limit to be hit");
+        } catch (ResourceLimitException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testBudget() {
+        NFASimulator simulator = new NFASimulator(RegexParser.parse("((a|a)*)*b"));
+        String text = "aaaaaaaaaaaaaaaaaaaab";
+        Assert.assertTrue(simulator.matches(text));
+
+        simulator.setBudget(text.length() - 1, Long.MAX_VALUE);
+        for (NFASimulator.Mode mode : NFASimulator.Mode.values()) {
+            NFASimulator limited = new NFASimulator(RegexParser.parse("((a|a)*)*b"), mode);
+            limited.setBudget(text.length() - 1, Long.MAX_VALUE);
+            try {
+                limited.matches(text);
+                Assert.fail("Expected the length limit to be hit in " + mode);
+            } catch (ResourceLimitException e) {
+                // expected
+            }
+            Assert.assertTrue(limited.matches(text.substring(1)));
+        }
+        try {
+            simulator.matchGroups(text);
+            Assert.fail("Expected the length limit to be hit");
+        } catch (ResourceLimitException e) {
+            // expected
+        }
+
+        simulator.setBudget(Integer.MAX_VALUE, 100);
+        Assert.assertTrue(simulator.matches("ab"));
+        try {
+            simulator.matches(text);
+            Assert.fail("Expected the step limit to be hit");
+        } catch (ResourceLimitException e) {
+            // expected
+        }
+        try {
+            simulator.findLongest("x" + text);
+            Assert.fail("Expected the step limit to be hit");
+        } catch (ResourceLimitException e) {
+            // expected
+        }
+        Assert.assertEquals(new Match(1, 2), simulator.find("xbx"));
+
+        // capture groups step through the same state sets
+        Assert.assertEquals(2, simulator.matchGroups("ab").getEnd());
+        try {
+            simulator.matchGroups(text);
+            Assert.fail("Expected the step limit to be hit");
+        } catch (ResourceLimitException e) {
+            // expected
+        }
+        try {
+            simulator.findGroups("x" + text);
+            Assert.fail("Expected the step limit to be hit");
+        } catch (ResourceLimitException e) {
+            // expected
+        }
+
+        // the lazy DFA counts the states behind every transition it computes
+        NFASimulator lazy = new NFASimulator(RegexParser.parse("((a|a)*)*b"), NFASimulator.Mode.LAZY_DFA);
+        lazy.setBudget(Integer.MAX_VALUE, 3);
+        try {
+            lazy.matches(text);
+            Assert.fail("Expected the step limit to be hit");
+        } catch (ResourceLimitException e) {
+            // expected
+        }
+        lazy.setBudget(Integer.MAX_VALUE, Long.MAX_VALUE);
+        Assert.assertTrue(lazy.matches(text));
+    }
+}
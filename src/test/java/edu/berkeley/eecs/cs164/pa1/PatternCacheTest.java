@@ -0,0 +1,97 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PatternCacheTest {
+
+    @Test
+    public void testHitsAndMisses() throws Exception {
+        PatternCache cache = new PatternCache(10, Long.MAX_VALUE);
+        PatternCache.Entry entry = cache.get("a(bc)*d");
+        Assert.assertSame(entry, cache.get("a(bc)*d"));
+        Assert.assertNotSame(entry, cache.get("a(bc)+d"));
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(2, cache.getMissCount());
+        Assert.assertEquals(0, cache.getEvictionCount());
+
+        Assert.assertTrue(entry.getCompiledNfa().matches("abcbcd"));
+        Assert.assertTrue(new DfaMatcher(entry.getDfa()).matches("ad"));
+        Assert.assertSame(entry.getDfa(), entry.getDfa());
+    }
+
+    @Test
+    public void testEntryLimitEvictsLeastRecentlyUsed() throws Exception {
+        PatternCache cache = new PatternCache(2, Long.MAX_VALUE);
+        PatternCache.Entry a = cache.get("a");
+        cache.get("b");
+        // touching a makes b the eldest
+        Assert.assertSame(a, cache.get("a"));
+        cache.get("c");
+
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(1, cache.getEvictionCount());
+        Assert.assertSame(a, cache.get("a"));
+        long misses = cache.getMissCount();
+        cache.get("b");
+        Assert.assertEquals(misses + 1, cache.getMissCount());
+    }
+
+    @Test
+    public void testByteLimit() throws Exception {
+        PatternCache unbounded = new PatternCache(100, Long.MAX_VALUE);
+        long oneEntry = unbounded.get("(ab|cd)*").getEstimatedBytes();
+        Assert.assertEquals(oneEntry, unbounded.getEstimatedBytes());
+
+        // room for two entries of this size, but not three
+        PatternCache cache = new PatternCache(100, oneEntry * 2 + oneEntry / 2);
+        cache.get("(ab|cd)*");
+        cache.get("(ab|ce)*");
+        cache.get("(ab|cf)*");
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(1, cache.getEvictionCount());
+        Assert.assertTrue(cache.getEstimatedBytes() <= oneEntry * 2 + oneEntry / 2);
+
+        // building a DFA grows the entry, which pushes the other one out
+        PatternCache.Entry entry = cache.get("(ab|cf)*");
+        entry.getDfa();
+        Assert.assertTrue(entry.getEstimatedBytes() > oneEntry);
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals(entry.getEstimatedBytes(), cache.getEstimatedBytes());
+    }
+
+    @Test
+    public void testDfaLimitIsRemembered() throws Exception {
+        PatternCache cache = new PatternCache(10, Long.MAX_VALUE, 1000);
+        // the last thirteen characters have to be remembered, which takes 2^13 dfa states
+        PatternCache.Entry entry = cache.get("(a|b)*a(a|b){12}");
+        ResourceLimitException first = null;
+        try {
+            entry.getDfa();
+            Assert.fail("Expected the dfa state limit to be hit");
+        } catch (ResourceLimitException e) {
+            first = e;
+        }
+        try {
+            entry.getDfa();
+            Assert.fail("Expected the dfa state limit to be hit");
+        } catch (ResourceLimitException e) {
+            // determinizing again would have thrown a new exception
+            Assert.assertSame(first, e);
+        }
+        Assert.assertTrue(entry.getCompiledNfa().matches("abbbbbbbbbbbb"));
+    }
+
+    @Test
+    public void testGroups() throws Exception {
+        PatternCache cache = new PatternCache(10, Long.MAX_VALUE);
+        PatternCache.Entry entry = cache.get("(\\d+)-(\\d+)");
+        Assert.assertEquals(0, entry.getAutomaton().getGroupCount());
+        Match match = entry.getCompiledNfa().getThreadCaptureMatcher().match("555-1234");
+        Assert.assertEquals(2, match.getGroupCount());
+        Assert.assertEquals("555", match.getGroup("555-1234", 1));
+        Assert.assertEquals("1234", match.getGroup("555-1234", 2));
+        Assert.assertTrue(entry.getCompiledNfa().matches("1-2"));
+        Assert.assertFalse(entry.getCompiledNfa().matches("1-"));
+    }
+}
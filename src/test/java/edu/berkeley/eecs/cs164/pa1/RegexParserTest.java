@@ -3,7 +3,13 @@ package edu.berkeley.eecs.cs164.pa1;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class RegexParserTest {
 
@@ -22,4 +28,84 @@ public class RegexParserTest {
         Assert.assertNull(RegexParser.parse("a(b\\)"));
     }
 
-}
\ No newline at end of file
+    @Test(expected = RegexParseException.class)
+    public void testUnterminatedCharacterClass() throws Exception {
+        Assert.assertNotNull(RegexParser.parse("[a\\]]"));
+        Assert.assertNull(RegexParser.parse("[a\\]"));
+    }
+
+    @Test(expected = RegexParseException.class)
+    public void testReversedRange() throws Exception {
+        Assert.assertNull(RegexParser.parse("[z-a]"));
+    }
+
+    @Test(expected = RegexParseException.class)
+    public void testRepetitionTooLarge() throws Exception {
+        Assert.assertNotNull(RegexParser.parse("a{" + RegexParser.MAX_REPETITION + "}"));
+        Assert.assertNull(RegexParser.parse("a{1," + (RegexParser.MAX_REPETITION + 1) + "}"));
+    }
+
+    @Test(expected = RegexParseException.class)
+    public void testReversedRepetition() throws Exception {
+        Assert.assertNull(RegexParser.parse("a{3,2}"));
+    }
+
+    @Test(expected = RegexParseException.class)
+    public void testRepetitionWithoutAtom() throws Exception {
+        Assert.assertNull(RegexParser.parse("a*{2}"));
+    }
+
+    @Test(expected = ResourceLimitException.class)
+    public void testNestedRepetitionTooLarge() throws Exception {
+        // a million copies of a: the clones are refused before any of them is made
+        Assert.assertNull(RegexParser.parse("(a{1000}){1000}"));
+    }
+
+    @Test
+    public void testStateLimit() throws Exception {
+        int states = RegexParser.parse("(ab|c)*d{5}").getStateCount();
+        Assert.assertNotNull(RegexParser.parse("(ab|c)*d{5}", states + 10));
+        try {
+            RegexParser.parse("(ab|c)*d{5}", states / 2);
+            Assert.fail("Expected the state limit to be hit");
+        } catch (ResourceLimitException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains(String.valueOf(states / 2)));
+        }
+    }
+
+    @Test
+    public void testConcurrentParsing() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Automaton>> results = new ArrayList<Future<Automaton>>();
+            for (int i = 0; i < 2000; i++) {
+                final String pattern = concurrentPattern(i);
+                results.add(pool.submit(new Callable<Automaton>() {
+                    public Automaton call() throws Exception {
+                        return RegexParser.parse(pattern);
+                    }
+                }));
+            }
+
+            Random random = new Random(164);
+            for (int i = 0; i < results.size(); i++) {
+                NFASimulator simulator = new NFASimulator(results.get(i).get());
+                String prefix = "<" + i + ">";
+                String body = "";
+                for (int n = random.nextInt(5); n > 0; n--) {
+                    body += random.nextBoolean() ? "a" : "b" + (i % 10);
+                }
+                Assert.assertTrue(concurrentPattern(i), simulator.matches(prefix + body + "z"));
+                Assert.assertTrue(concurrentPattern(i), simulator.matches(prefix + body));
+                Assert.assertFalse(concurrentPattern(i), simulator.matches("<" + (i + 1) + ">" + body));
+                Assert.assertFalse(concurrentPattern(i), simulator.matches(prefix + "b" + (i + 1) % 10));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static String concurrentPattern(int i) {
+        return "<" + i + ">(a|b" + (i % 10) + ")*z?";
+    }
+}
@@ -0,0 +1,73 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+public class RegexSetTest {
+
+    @Test
+    public void testSmallSet() throws Exception {
+        RegexSet set = RegexSet.compile("ab*", "a+", "(ab)*", "b");
+        Assert.assertEquals(4, set.size());
+        Assert.assertArrayEquals(new int[]{0, 1}, set.matchingIds("a"));
+        Assert.assertArrayEquals(new int[]{0, 2}, set.matchingIds("ab"));
+        Assert.assertArrayEquals(new int[]{2}, set.matchingIds(""));
+        Assert.assertArrayEquals(new int[]{3}, set.matchingIds("b"));
+        Assert.assertArrayEquals(new int[0], set.matchingIds("ba"));
+        Assert.assertTrue(set.matchesAny("abbb"));
+        Assert.assertFalse(set.matchesAny("c"));
+    }
+
+    @Test
+    public void testAgreesWithSeparatePatterns() throws Exception {
+        Random random = new Random(164);
+        List<String> patterns = new ArrayList<String>();
+        List<NFASimulator> simulators = new ArrayList<NFASimulator>();
+        for (int i = 0; i < 300; i++) {
+            String pattern = "x" + i + "(a|b)*" + (char) ('a' + random.nextInt(3)) + "?";
+            patterns.add(pattern);
+            simulators.add(new NFASimulator(RegexParser.parse(pattern)));
+        }
+        RegexSet set = RegexSet.compile(patterns.toArray(new String[patterns.size()]));
+
+        for (int n = 0; n < 500; n++) {
+            StringBuilder text = new StringBuilder("x" + random.nextInt(320));
+            for (int k = random.nextInt(6); k > 0; k--) {
+                text.append((char) ('a' + random.nextInt(3)));
+            }
+            BitSet expected = new BitSet();
+            for (int i = 0; i < simulators.size(); i++) {
+                if (simulators.get(i).matches(text.toString())) {
+                    expected.set(i);
+                }
+            }
+            Assert.assertEquals(text.toString(), expected, set.matches(text.toString()));
+        }
+    }
+
+    @Test
+    public void testPatternsAreNotModified() throws Exception {
+        Automaton ab = RegexParser.parse("ab*");
+        Automaton c = RegexParser.parse("c|ab");
+        int states = ab.getStateCount();
+        int edges = ab.getEdgeCount();
+        List<Automaton> patterns = new ArrayList<Automaton>();
+        patterns.add(ab);
+        patterns.add(c);
+        RegexSet first = new RegexSet(patterns);
+        RegexSet second = new RegexSet(patterns);
+        Assert.assertEquals(states, ab.getStateCount());
+        Assert.assertEquals(edges, ab.getEdgeCount());
+        Assert.assertTrue(ab.getOut().getEpsilonTransitions().isEmpty());
+
+        BitSet both = new BitSet();
+        both.set(0, 2);
+        Assert.assertEquals(both, first.matches("ab"));
+        Assert.assertEquals(both, second.matches("ab"));
+    }
+}
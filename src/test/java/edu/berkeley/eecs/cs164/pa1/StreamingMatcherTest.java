@@ -0,0 +1,72 @@
+package edu.berkeley.eecs.cs164.pa1;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+
+public class StreamingMatcherTest {
+
+    private static void testSplits(String regex, String text, boolean isMatch) {
+        CompiledNfa nfa = CompiledNfa.compile(RegexParser.parse(regex));
+        StreamingMatcher matcher = new StreamingMatcher(nfa);
+
+        // every way of cutting the text in three must give the same answer
+        for (int a = 0; a <= text.length(); a++) {
+            for (int b = a; b <= text.length(); b++) {
+                matcher.feed(text.substring(0, a));
+                matcher.feed(text.substring(a, b).toCharArray());
+                matcher.feed(CharBuffer.wrap(text.substring(b)));
+                Assert.assertEquals(text.length(), matcher.getPosition());
+                Assert.assertEquals(regex + " on " + text + " split at " + a + "," + b, isMatch, matcher.finish());
+            }
+        }
+    }
+
+    @Test
+    public void testChunkBoundaries() throws Exception {
+        testSplits("a(bc)*d", "abcbcd", true);
+        testSplits("a(bc)*d", "abcbd", false);
+        testSplits("(ab|cd)+e?", "abcdabe", true);
+        testSplits("(ab|cd)+e?", "abcdabee", false);
+        testSplits("a*", "", true);
+    }
+
+    @Test
+    public void testDeadInput() throws Exception {
+        StreamingMatcher matcher = new StreamingMatcher(RegexParser.parse("ab*"));
+        matcher.feed("abbx");
+        Assert.assertTrue(matcher.isDead());
+        matcher.feed("bbb");
+        Assert.assertFalse(matcher.finish());
+
+        // finish leaves the matcher ready for the next input
+        Assert.assertFalse(matcher.isDead());
+        matcher.feed(ByteBuffer.wrap("abbb".getBytes("US-ASCII")));
+        Assert.assertTrue(matcher.finish());
+    }
+
+    @Test
+    public void testStreams() throws Exception {
+        CompiledNfa nfa = CompiledNfa.compile(RegexParser.parse("(ab|cd)*e"));
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            builder.append(i % 3 == 0 ? "cd" : "ab");
+        }
+        String accepted = builder.append('e').toString();
+        String rejected = accepted + "e";
+
+        Assert.assertTrue(StreamingMatcher.matches(nfa, new StringReader(accepted)));
+        Assert.assertFalse(StreamingMatcher.matches(nfa, new StringReader(rejected)));
+        Assert.assertTrue(StreamingMatcher.matches(nfa, new ByteArrayInputStream(accepted.getBytes("US-ASCII"))));
+        Assert.assertFalse(StreamingMatcher.matches(nfa, new ByteArrayInputStream(rejected.getBytes("US-ASCII"))));
+        Assert.assertTrue(StreamingMatcher.matches(nfa,
+                Channels.newChannel(new ByteArrayInputStream(accepted.getBytes("US-ASCII")))));
+        Assert.assertFalse(StreamingMatcher.matches(nfa,
+                Channels.newChannel(new ByteArrayInputStream(rejected.getBytes("US-ASCII")))));
+    }
+}